@@ -0,0 +1,25 @@
+package ru.practicum.shareit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+
+/**
+ * Доступ к служебной статистике: только пользователям из shareit.stats.admin-ids.
+ * По умолчанию список пуст и статистика закрыта для всех.
+ */
+@Component
+public class StatsAccess {
+    private final Set<Long> adminIds;
+
+    public StatsAccess(@Value("${shareit.stats.admin-ids:}") Set<Long> adminIds) {
+        this.adminIds = Set.copyOf(adminIds);
+    }
+
+    public void check(Long userId) {
+        if (!adminIds.contains(userId)) {
+            throw new StatsAccessDeniedException("Статистика недоступна пользователю " + userId);
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package ru.practicum.shareit;
+
+public class StatsAccessDeniedException extends RuntimeException {
+    public StatsAccessDeniedException(String message) {
+        super(message);
+    }
+}
@@ -1,15 +1,28 @@
 package ru.practicum.shareit.booking;
 
 import lombok.AllArgsConstructor;
-import org.springframework.data.domain.PageRequest;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import ru.practicum.shareit.OffsetPageRequest;
+import ru.practicum.shareit.StatsAccess;
+import ru.practicum.shareit.booking.dto.BookingBatchResult;
+import ru.practicum.shareit.booking.dto.BookingBulkResult;
+import ru.practicum.shareit.booking.dto.BookingCompactDto;
+import ru.practicum.shareit.booking.dto.BookingCompactPage;
 import ru.practicum.shareit.booking.dto.BookingDto;
 import ru.practicum.shareit.booking.dto.BookingDtoRequest;
+import ru.practicum.shareit.booking.dto.BookingPage;
+import ru.practicum.shareit.booking.dto.BookingStatsDto;
+import ru.practicum.shareit.booking.dto.BookingSweepStats;
 import ru.practicum.shareit.booking.service.BookingService;
 
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Positive;
 import javax.validation.constraints.PositiveOrZero;
+import javax.validation.constraints.Size;
 import java.util.List;
 
 @RestController
@@ -18,7 +31,11 @@ import java.util.List;
 @RequestMapping(path = "/bookings")
 public class BookingController {
     private BookingService bookingService;
+    private StatsAccess statsAccess;
     public static final String USER_ID_HEADER = "X-Sharer-User-Id";
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    public static final String COMPACT_VIEW = "view=compact";
+    public static final int MAX_BATCH_SIZE = 100;
 
     @PostMapping
     public BookingDto addBooking(@RequestBody @Validated BookingDtoRequest bookingDtoRequest,
@@ -26,6 +43,14 @@ public class BookingController {
         return bookingService.addBooking(userId, bookingDtoRequest);
     }
 
+    @PostMapping("/batch")
+    public List<BookingBatchResult> addBookings(
+            @RequestBody @Valid @NotEmpty @Size(max = MAX_BATCH_SIZE)
+            List<@NotNull BookingDtoRequest> bookingDtoRequests,
+            @RequestHeader(USER_ID_HEADER) Long userId) {
+        return bookingService.addBookings(userId, bookingDtoRequests);
+    }
+
     @PatchMapping("/{bookingId}")
     public BookingDto patchBooking(
             @RequestHeader(USER_ID_HEADER) Long userId,
@@ -35,6 +60,15 @@ public class BookingController {
         return bookingService.patchBooking(userId, bookingId, approved);
     }
 
+    @PatchMapping("/batch")
+    public List<BookingBulkResult> patchBookings(
+            @RequestHeader(USER_ID_HEADER) Long userId,
+            @RequestBody @NotEmpty @Size(max = MAX_BATCH_SIZE) List<Long> bookingIds,
+            @RequestParam Boolean approved) {
+
+        return bookingService.patchBookings(userId, bookingIds, approved);
+    }
+
     @GetMapping("/{bookingId}")
     public BookingDto findById(@PathVariable Long bookingId,
                                @RequestHeader(USER_ID_HEADER) Long userId) {
@@ -42,18 +76,89 @@ public class BookingController {
     }
 
     @GetMapping
-    public List<BookingDto> findAllByUser(@RequestParam(defaultValue = "ALL") String state,
-                                          @RequestHeader(USER_ID_HEADER) Long userId,
-                                          @PositiveOrZero @RequestParam(defaultValue = "0") Integer from,
-                                          @Positive @RequestParam(defaultValue = "10") Integer size) {
-        return bookingService.findAllByUser(userId, state, PageRequest.of((from == 0 ? 0 : (from / size)), size));
+    public ResponseEntity<List<BookingDto>> findAllByUser(@RequestParam(defaultValue = "ALL") String state,
+                                                          @RequestHeader(USER_ID_HEADER) Long userId,
+                                                          @PositiveOrZero @RequestParam(defaultValue = "0") Integer from,
+                                                          @Positive @RequestParam(defaultValue = "10") Integer size,
+                                                          @RequestParam(required = false) String cursor) {
+        if (cursor == null && from > 0) {
+            return ResponseEntity.ok(bookingService.findAllByUser(userId, state, OffsetPageRequest.of(from, size)));
+        }
+        return toResponse(bookingService.findAllByUser(userId, state, cursor, size));
     }
 
     @GetMapping("/owner")
-    public List<BookingDto> findAllByOwner(@RequestParam(defaultValue = "ALL") String state,
-                                           @RequestHeader(USER_ID_HEADER) Long userId,
-                                           @PositiveOrZero @RequestParam(defaultValue = "0") Integer from,
-                                           @Positive @RequestParam(defaultValue = "10") Integer size) {
-        return bookingService.findAllByOwner(userId, state, PageRequest.of((from == 0 ? 0 : (from / size)), size));
+    public ResponseEntity<List<BookingDto>> findAllByOwner(@RequestParam(defaultValue = "ALL") String state,
+                                                           @RequestHeader(USER_ID_HEADER) Long userId,
+                                                           @PositiveOrZero @RequestParam(defaultValue = "0") Integer from,
+                                                           @Positive @RequestParam(defaultValue = "10") Integer size,
+                                                           @RequestParam(required = false) String cursor) {
+        if (cursor == null && from > 0) {
+            return ResponseEntity.ok(bookingService.findAllByOwner(userId, state, OffsetPageRequest.of(from, size)));
+        }
+        return toResponse(bookingService.findAllByOwner(userId, state, cursor, size));
+    }
+
+    @GetMapping("/stats")
+    public BookingStatsDto getStatsByUser(@RequestHeader(USER_ID_HEADER) Long userId) {
+        return bookingService.getStatsByUser(userId);
+    }
+
+    @GetMapping("/owner/stats")
+    public BookingStatsDto getStatsByOwner(@RequestHeader(USER_ID_HEADER) Long userId) {
+        return bookingService.getStatsByOwner(userId);
+    }
+
+    /**
+     * Счетчики фоновой отмены просроченных бронирований, только для пользователей из shareit.stats.admin-ids.
+     */
+    @GetMapping("/sweeper/stats")
+    public BookingSweepStats getSweepStats(@RequestHeader(USER_ID_HEADER) Long userId) {
+        statsAccess.check(userId);
+        return bookingService.getSweepStats();
+    }
+
+    @GetMapping(params = COMPACT_VIEW)
+    public ResponseEntity<List<BookingCompactDto>> findAllByUserCompact(
+            @RequestParam(defaultValue = "ALL") String state,
+            @RequestHeader(USER_ID_HEADER) Long userId,
+            @PositiveOrZero @RequestParam(defaultValue = "0") Integer from,
+            @Positive @RequestParam(defaultValue = "10") Integer size,
+            @RequestParam(required = false) String cursor) {
+        if (cursor == null && from > 0) {
+            return ResponseEntity.ok(
+                    bookingService.findAllByUserCompact(userId, state, OffsetPageRequest.of(from, size)));
+        }
+        return toCompactResponse(bookingService.findAllByUserCompact(userId, state, cursor, size));
+    }
+
+    @GetMapping(path = "/owner", params = COMPACT_VIEW)
+    public ResponseEntity<List<BookingCompactDto>> findAllByOwnerCompact(
+            @RequestParam(defaultValue = "ALL") String state,
+            @RequestHeader(USER_ID_HEADER) Long userId,
+            @PositiveOrZero @RequestParam(defaultValue = "0") Integer from,
+            @Positive @RequestParam(defaultValue = "10") Integer size,
+            @RequestParam(required = false) String cursor) {
+        if (cursor == null && from > 0) {
+            return ResponseEntity.ok(
+                    bookingService.findAllByOwnerCompact(userId, state, OffsetPageRequest.of(from, size)));
+        }
+        return toCompactResponse(bookingService.findAllByOwnerCompact(userId, state, cursor, size));
+    }
+
+    private ResponseEntity<List<BookingCompactDto>> toCompactResponse(BookingCompactPage page) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(page.getBookings());
+    }
+
+    private ResponseEntity<List<BookingDto>> toResponse(BookingPage page) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(page.getBookings());
     }
 }
@@ -6,6 +6,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import ru.practicum.shareit.booking.storage.BookingStatus;
 import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.request.model.ItemRequest;
 import ru.practicum.shareit.user.model.User;
 
 import java.time.LocalDateTime;
@@ -21,4 +22,27 @@ public class BookingDto {
     private User booker;
     private Item item;
     private BookingStatus status;
+
+    /**
+     * Конструктор для проекции списков бронирований: все поля читаются одним SQL.
+     */
+    public BookingDto(Long id, LocalDateTime start, LocalDateTime end, BookingStatus status,
+                      Long bookerId, String bookerName, String bookerEmail,
+                      Long itemId, String itemName, String itemDescription, Boolean itemAvailable,
+                      Long ownerId, String ownerName, String ownerEmail,
+                      Long requestId, String requestDescription, LocalDateTime requestCreated,
+                      Long requesterId, String requesterName, String requesterEmail) {
+        this.id = id;
+        this.start = start;
+        this.end = end;
+        this.status = status;
+        this.booker = new User(bookerId, bookerName, bookerEmail);
+        ItemRequest request = null;
+        if (requestId != null) {
+            User requester = requesterId == null ? null : new User(requesterId, requesterName, requesterEmail);
+            request = new ItemRequest(requestId, requestDescription, requester, requestCreated);
+        }
+        this.item = new Item(itemId, itemName, itemDescription, itemAvailable,
+                new User(ownerId, ownerName, ownerEmail), request);
+    }
 }
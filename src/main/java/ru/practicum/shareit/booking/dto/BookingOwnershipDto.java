@@ -0,0 +1,22 @@
+package ru.practicum.shareit.booking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import ru.practicum.shareit.booking.storage.BookingStatus;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BookingOwnershipDto {
+    private Long id;
+    private Long itemId;
+    private Long ownerId;
+    private BookingStatus status;
+    private LocalDateTime start;
+    private LocalDateTime end;
+}
@@ -0,0 +1,16 @@
+package ru.practicum.shareit.booking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class LastNextBookingDto {
+    private Long itemId;
+    private BookingDtoItem lastBooking;
+    private BookingDtoItem nextBooking;
+}
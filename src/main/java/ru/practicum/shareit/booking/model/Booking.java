@@ -20,7 +20,8 @@ import java.util.Objects;
 public class Booking {
     @Id
     @Column(name = "booking_id")
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "bookings_seq")
+    @SequenceGenerator(name = "bookings_seq", sequenceName = "bookings_seq", allocationSize = 100)
     private Long id;
     @Column(name = "start_time", nullable = false)
     private LocalDateTime start;
@@ -0,0 +1,69 @@
+package ru.practicum.shareit.booking.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.booking.storage.BookingArchiveRepository;
+import ru.practicum.shareit.booking.storage.BookingRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Переносит бронирования, завершившиеся раньше заданного возраста, в bookings_archive.
+ * Каждая порция копируется и удаляется в своей транзакции, поэтому прерванный запуск
+ * ничего не теряет и следующий просто продолжит с оставшихся строк.
+ */
+@Slf4j
+@Component
+public class BookingArchiver {
+    private final BookingRepository bookingRepository;
+    private final BookingArchiveRepository bookingArchiveRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration age;
+    private final int chunkSize;
+
+    public BookingArchiver(BookingRepository bookingRepository,
+                           BookingArchiveRepository bookingArchiveRepository,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${shareit.booking.archive.age:P365D}") Duration age,
+                           @Value("${shareit.booking.archive.chunk-size:500}") int chunkSize) {
+        this.bookingRepository = bookingRepository;
+        this.bookingArchiveRepository = bookingArchiveRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.age = age;
+        this.chunkSize = chunkSize;
+    }
+
+    @Scheduled(initialDelayString = "${shareit.booking.archive.interval:PT1H}",
+            fixedDelayString = "${shareit.booking.archive.interval:PT1H}")
+    public int archive() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(age);
+        int total = 0;
+        int moved;
+        do {
+            moved = archiveChunk(cutoff);
+            total += moved;
+        } while (moved == chunkSize);
+        log.info("Перенесено в архив бронирований: {}, завершившихся до {}", total, cutoff);
+        return total;
+    }
+
+    private int archiveChunk(LocalDateTime cutoff) {
+        Integer moved = transactionTemplate.execute(status -> {
+            List<Long> ids = bookingRepository.findIdsByEndBefore(cutoff, PageRequest.of(0, chunkSize));
+            if (ids.isEmpty()) {
+                return 0;
+            }
+            bookingArchiveRepository.copyFromBookings(ids);
+            bookingRepository.deleteAllByIdIn(ids);
+            return ids.size();
+        });
+        return moved == null ? 0 : moved;
+    }
+}
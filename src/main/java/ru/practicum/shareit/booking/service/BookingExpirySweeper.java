@@ -0,0 +1,97 @@
+package ru.practicum.shareit.booking.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.booking.dto.BookingSweepReport;
+import ru.practicum.shareit.booking.dto.BookingSweepStats;
+import ru.practicum.shareit.booking.storage.BookingRepository;
+import ru.practicum.shareit.booking.storage.BookingStatus;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Отменяет бронирования, которые так и остались в WAITING после наступления start.
+ * Работает порциями: в каждой транзакции выбираются только id и выполняется один UPDATE,
+ * сущности не загружаются. Статус меняется только у строк, которые все еще в WAITING,
+ * поэтому параллельное подтверждение владельцем не перезаписывается.
+ */
+@Slf4j
+@Component
+public class BookingExpirySweeper {
+    private final BookingRepository bookingRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final AtomicLong totalCanceled = new AtomicLong();
+    private volatile BookingSweepReport lastReport;
+
+    public BookingExpirySweeper(BookingRepository bookingRepository,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${shareit.booking.expiry.chunk-size:500}") int chunkSize) {
+        this.bookingRepository = bookingRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+    }
+
+    @Scheduled(initialDelayString = "${shareit.booking.expiry.interval:PT5M}",
+            fixedDelayString = "${shareit.booking.expiry.interval:PT5M}")
+    public BookingSweepReport sweep() {
+        LocalDateTime now = LocalDateTime.now();
+        long started = System.nanoTime();
+        int chunks = 0;
+        int selected = 0;
+        int canceled = 0;
+        Chunk chunk;
+        do {
+            chunk = cancelChunk(now);
+            if (chunk.selected > 0) {
+                chunks++;
+            }
+            selected += chunk.selected;
+            canceled += chunk.canceled;
+        } while (chunk.selected == chunkSize);
+
+        BookingSweepReport report = new BookingSweepReport(now, (System.nanoTime() - started) / 1_000_000,
+                chunks, selected, canceled);
+        totalCanceled.addAndGet(canceled);
+        lastReport = report;
+        log.info("Отмена просроченных бронирований: порций {}, выбрано {}, отменено {}, за {} мс",
+                chunks, selected, canceled, report.getDurationMillis());
+        return report;
+    }
+
+    public BookingSweepStats getStats() {
+        return new BookingSweepStats(totalCanceled.get(), lastReport);
+    }
+
+    private Chunk cancelChunk(LocalDateTime now) {
+        Chunk chunk = transactionTemplate.execute(status -> {
+            List<Long> ids = bookingRepository.findIdsByStatusAndStartBefore(
+                    BookingStatus.WAITING, now, PageRequest.of(0, chunkSize));
+            if (ids.isEmpty()) {
+                return Chunk.EMPTY;
+            }
+            int updated = bookingRepository.updateStatusByIdInAndStatus(
+                    ids, BookingStatus.WAITING, BookingStatus.CANCELED);
+            return new Chunk(ids.size(), updated);
+        });
+        return chunk == null ? Chunk.EMPTY : chunk;
+    }
+
+    private static final class Chunk {
+        private static final Chunk EMPTY = new Chunk(0, 0);
+        private final int selected;
+        private final int canceled;
+
+        private Chunk(int selected, int canceled) {
+            this.selected = selected;
+            this.canceled = canceled;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package ru.practicum.shareit.booking.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.storage.BookingRepository;
+import ru.practicum.shareit.booking.storage.BookingStatus;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Индекс подтвержденных бронирований по предметам.
+ * Интервалы предмета загружаются из bookings при первом обращении и дальше
+ * поддерживаются при создании, подтверждении и отклонении бронирований.
+ * Закончившиеся интервалы отбрасываются при проверке, число предметов ограничено,
+ * дольше всех не проверявшиеся вытесняются и при следующем обращении загружаются заново.
+ */
+@Component
+public class BookingIntervalIndex {
+    private final BookingRepository bookingRepository;
+    private final Map<Long, ItemIntervals> intervals;
+    private long changes;
+
+    public BookingIntervalIndex(BookingRepository bookingRepository,
+                                @Value("${shareit.booking.interval-index.max-items:10000}") int maxItems) {
+        this.bookingRepository = bookingRepository;
+        this.intervals = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, ItemIntervals> eldest) {
+                return size() > maxItems;
+            }
+        };
+    }
+
+    public boolean isFree(long itemId, LocalDateTime start, LocalDateTime end) {
+        return !get(itemId).overlaps(toMillis(start), toMillis(end));
+    }
+
+    public void onSaved(Booking booking) {
+        onStatusChanged(booking.getItem().getId(), booking.getId(), booking.getStart(), booking.getEnd(),
+                booking.getStatus());
+    }
+
+    public void onStatusChanged(Long itemId, Long bookingId, LocalDateTime start, LocalDateTime end,
+                                BookingStatus status) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(itemId, bookingId, start, end, status);
+                }
+            });
+        } else {
+            apply(itemId, bookingId, start, end, status);
+        }
+    }
+
+    /**
+     * Незагруженный предмет не трогаем, его интервалы прочитаются из базы уже с этим коммитом.
+     * Счетчик changes не дает положить в индекс загрузку, которая шла одновременно с изменением.
+     */
+    private void apply(Long itemId, Long bookingId, LocalDateTime start, LocalDateTime end, BookingStatus status) {
+        synchronized (intervals) {
+            changes++;
+            ItemIntervals itemIntervals = intervals.get(itemId);
+            if (itemIntervals != null) {
+                itemIntervals.remove(bookingId);
+                if (isBlocking(status)) {
+                    itemIntervals.add(bookingId, toMillis(start), toMillis(end));
+                }
+            }
+        }
+    }
+
+    /**
+     * Интервалы читаются из базы без блокировки индекса, поэтому загрузка одного предмета
+     * не задерживает проверки и изменения других. Если за время загрузки применилось хоть одно
+     * изменение, прочитанное используется только для этой проверки и в индекс не кладется.
+     */
+    private ItemIntervals get(long itemId) {
+        ItemIntervals itemIntervals;
+        long loadedAt;
+        synchronized (intervals) {
+            itemIntervals = intervals.get(itemId);
+            loadedAt = changes;
+        }
+        if (itemIntervals == null) {
+            ItemIntervals loaded = load(itemId);
+            synchronized (intervals) {
+                itemIntervals = intervals.get(itemId);
+                if (itemIntervals == null) {
+                    itemIntervals = loaded;
+                    if (loadedAt == changes) {
+                        intervals.put(itemId, loaded);
+                    }
+                }
+            }
+        }
+        itemIntervals.prune(toMillis(LocalDateTime.now()));
+        return itemIntervals;
+    }
+
+    private ItemIntervals load(long itemId) {
+        ItemIntervals itemIntervals = new ItemIntervals();
+        for (Booking booking : bookingRepository.getActiveBookings(itemId)) {
+            itemIntervals.add(booking.getId(), toMillis(booking.getStart()), toMillis(booking.getEnd()));
+        }
+        return itemIntervals;
+    }
+
+    private static boolean isBlocking(BookingStatus status) {
+        return status == null || status == BookingStatus.APPROVED;
+    }
+
+    private static long toMillis(LocalDateTime dateTime) {
+        return dateTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    /**
+     * Интервалы одного предмета, отсортированные по началу.
+     * maxEnds[i] - максимальный конец среди интервалов 0..i, что дает поиск пересечения за O(log n)
+     * даже если в базе уже лежат пересекающиеся бронирования.
+     */
+    static final class ItemIntervals {
+        private long[] ids = new long[4];
+        private long[] starts = new long[4];
+        private long[] ends = new long[4];
+        private long[] maxEnds = new long[4];
+        private int size;
+        private long minEnd = Long.MAX_VALUE;
+
+        synchronized boolean overlaps(long start, long end) {
+            int last = lowerBound(end) - 1;
+            return last >= 0 && maxEnds[last] > start;
+        }
+
+        synchronized void add(Long id, long start, long end) {
+            if (size == starts.length) {
+                int capacity = size * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                starts = Arrays.copyOf(starts, capacity);
+                ends = Arrays.copyOf(ends, capacity);
+                maxEnds = Arrays.copyOf(maxEnds, capacity);
+            }
+            int pos = lowerBound(start);
+            System.arraycopy(ids, pos, ids, pos + 1, size - pos);
+            System.arraycopy(starts, pos, starts, pos + 1, size - pos);
+            System.arraycopy(ends, pos, ends, pos + 1, size - pos);
+            ids[pos] = id == null ? -1 : id;
+            starts[pos] = start;
+            ends[pos] = end;
+            size++;
+            minEnd = Math.min(minEnd, end);
+            recalculate(pos);
+        }
+
+        /**
+         * Убирает интервалы, закончившиеся раньше now. Пока не закончился ни один,
+         * обходится одним сравнением.
+         */
+        synchronized void prune(long now) {
+            if (minEnd >= now) {
+                return;
+            }
+            int kept = 0;
+            long newMinEnd = Long.MAX_VALUE;
+            for (int i = 0; i < size; i++) {
+                if (ends[i] >= now) {
+                    ids[kept] = ids[i];
+                    starts[kept] = starts[i];
+                    ends[kept] = ends[i];
+                    newMinEnd = Math.min(newMinEnd, ends[i]);
+                    kept++;
+                }
+            }
+            size = kept;
+            minEnd = newMinEnd;
+            recalculate(0);
+        }
+
+        synchronized void remove(Long id) {
+            if (id == null) {
+                return;
+            }
+            for (int i = 0; i < size; i++) {
+                if (ids[i] == id) {
+                    System.arraycopy(ids, i + 1, ids, i, size - i - 1);
+                    System.arraycopy(starts, i + 1, starts, i, size - i - 1);
+                    System.arraycopy(ends, i + 1, ends, i, size - i - 1);
+                    size--;
+                    recalculate(i);
+                    return;
+                }
+            }
+        }
+
+        private int lowerBound(long value) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (starts[mid] < value) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private void recalculate(int from) {
+            for (int i = from; i < size; i++) {
+                maxEnds[i] = i == 0 ? ends[i] : Math.max(maxEnds[i - 1], ends[i]);
+            }
+        }
+    }
+}
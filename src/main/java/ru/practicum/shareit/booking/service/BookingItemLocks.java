@@ -0,0 +1,61 @@
+package ru.practicum.shareit.booking.service;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Полосатые блокировки по предметам для проверки пересечений и записи бронирования.
+ * Блокировка держится до завершения транзакции, чтобы индекс интервалов успел обновиться
+ * в afterCommit раньше, чем следующий поток выполнит проверку для того же предмета.
+ */
+@Component
+public class BookingItemLocks {
+    private static final int STRIPES = 64;
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+
+    public BookingItemLocks() {
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    public void lockUntilCompletion(long itemId) {
+        lockStripeUntilCompletion(stripeIndex(itemId));
+    }
+
+    /**
+     * Блокирует полосы нескольких предметов в порядке номеров полос, чтобы пакетные операции
+     * не могли взаимно заблокировать друг друга.
+     */
+    public void lockAllUntilCompletion(Collection<Long> itemIds) {
+        itemIds.stream()
+                .map(this::stripeIndex)
+                .distinct()
+                .sorted()
+                .forEach(this::lockStripeUntilCompletion);
+    }
+
+    private void lockStripeUntilCompletion(int stripe) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        ReentrantLock lock = locks[stripe];
+        lock.lock();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                lock.unlock();
+            }
+        });
+    }
+
+    private int stripeIndex(long itemId) {
+        int hash = Long.hashCode(itemId);
+        hash ^= hash >>> 16;
+        return hash & (STRIPES - 1);
+    }
+}
@@ -5,6 +5,7 @@ import org.springframework.stereotype.Service;
 import ru.practicum.shareit.booking.dto.BookingDto;
 import ru.practicum.shareit.booking.dto.BookingDtoItem;
 import ru.practicum.shareit.booking.dto.BookingDtoRequest;
+import ru.practicum.shareit.booking.model.ArchivedBooking;
 import ru.practicum.shareit.booking.model.Booking;
 import ru.practicum.shareit.booking.storage.BookingStatus;
 import ru.practicum.shareit.item.model.Item;
@@ -23,6 +24,11 @@ public class BookingMapper {
         return booking;
     }
 
+    public static Booking mapToModel(ArchivedBooking archivedBooking) {
+        return new Booking(archivedBooking.getId(), archivedBooking.getStart(), archivedBooking.getEnd(),
+                archivedBooking.getItem(), archivedBooking.getBooker(), archivedBooking.getStatus());
+    }
+
     public static BookingDto mapToDto(Booking booking, Item item) {
         BookingDto bookingDto = new BookingDto();
         bookingDto.setId(booking.getId());
@@ -1,19 +1,48 @@
 package ru.practicum.shareit.booking.service;
 
 import org.springframework.data.domain.Pageable;
+import ru.practicum.shareit.booking.dto.BookingBatchResult;
+import ru.practicum.shareit.booking.dto.BookingBulkResult;
+import ru.practicum.shareit.booking.dto.BookingCompactDto;
+import ru.practicum.shareit.booking.dto.BookingCompactPage;
 import ru.practicum.shareit.booking.dto.BookingDto;
 import ru.practicum.shareit.booking.dto.BookingDtoRequest;
+import ru.practicum.shareit.booking.dto.BookingPage;
+import ru.practicum.shareit.booking.dto.BookingStatsDto;
+import ru.practicum.shareit.booking.dto.BookingSweepStats;
 
 import java.util.List;
 
 public interface BookingService {
     BookingDto addBooking(Long userId, BookingDtoRequest bookingDtoRequest);
 
+    List<BookingBatchResult> addBookings(Long userId, List<BookingDtoRequest> bookingDtoRequests);
+
     BookingDto patchBooking(Long userId, Long bookingId, Boolean approved);
 
+    List<BookingBulkResult> patchBookings(Long userId, List<Long> bookingIds, Boolean approved);
+
     BookingDto findById(Long userId, Long bookingId);
 
     List<BookingDto> findAllByUser(Long userId, String state, Pageable pageable);
 
     List<BookingDto> findAllByOwner(Long userId, String state, Pageable pageable);
+
+    BookingPage findAllByUser(Long userId, String state, String cursor, int size);
+
+    BookingPage findAllByOwner(Long userId, String state, String cursor, int size);
+
+    List<BookingCompactDto> findAllByUserCompact(Long userId, String state, Pageable pageable);
+
+    List<BookingCompactDto> findAllByOwnerCompact(Long userId, String state, Pageable pageable);
+
+    BookingCompactPage findAllByUserCompact(Long userId, String state, String cursor, int size);
+
+    BookingCompactPage findAllByOwnerCompact(Long userId, String state, String cursor, int size);
+
+    BookingStatsDto getStatsByUser(Long userId);
+
+    BookingStatsDto getStatsByOwner(Long userId);
+
+    BookingSweepStats getSweepStats();
 }
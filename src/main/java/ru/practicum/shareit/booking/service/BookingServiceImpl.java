@@ -5,14 +5,25 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.shareit.booking.dto.BookingBatchResult;
+import ru.practicum.shareit.booking.dto.BookingBulkResult;
+import ru.practicum.shareit.booking.dto.BookingCompactDto;
+import ru.practicum.shareit.booking.dto.BookingCompactPage;
 import ru.practicum.shareit.booking.dto.BookingDto;
 import ru.practicum.shareit.booking.dto.BookingDtoRequest;
+import ru.practicum.shareit.booking.dto.BookingOwnershipDto;
+import ru.practicum.shareit.booking.dto.BookingPage;
+import ru.practicum.shareit.booking.dto.BookingStatsDto;
+import ru.practicum.shareit.booking.dto.BookingSweepStats;
 import ru.practicum.shareit.booking.exceptions.DateConflictException;
 import ru.practicum.shareit.booking.exceptions.UnavaibleDatePeriodException;
 import ru.practicum.shareit.booking.exceptions.UnavailableBookingException;
 import ru.practicum.shareit.booking.exceptions.UnsupportedStatusException;
 import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.storage.BookingArchiveRepository;
+import ru.practicum.shareit.booking.storage.BookingCursor;
 import ru.practicum.shareit.booking.storage.BookingRepository;
+import ru.practicum.shareit.booking.storage.BookingRole;
 import ru.practicum.shareit.booking.storage.BookingState;
 import ru.practicum.shareit.booking.storage.BookingStatus;
 import ru.practicum.shareit.item.exceptions.ItemNotAvailibleException;
@@ -25,8 +36,14 @@ import ru.practicum.shareit.user.storage.UserRepository;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.stream.Collectors;
 
 import static ru.practicum.shareit.booking.storage.BookingStatus.REJECTED;
@@ -40,37 +57,35 @@ public class BookingServiceImpl implements BookingService {
     private final ItemRepository itemRepository;
     private final BookingRepository bookingRepository;
     private final BookingMapper bookingMapper;
+    private final BookingIntervalIndex bookingIntervalIndex;
+    private final BookingItemLocks bookingItemLocks;
+    private final BookingArchiveRepository bookingArchiveRepository;
+    private final ItemBookingCache itemBookingCache;
+    private final BookingExpirySweeper bookingExpirySweeper;
 
     @Override
     @Transactional
     public BookingDto addBooking(Long userId, BookingDtoRequest bookingDtoRequest) {
 
-        LocalDateTime bookingStart = bookingDtoRequest.getStart();
-        LocalDateTime bookingEnd = bookingDtoRequest.getEnd();
-        if (bookingEnd.isBefore(bookingStart) || bookingEnd.equals(bookingStart)) {
-            throw new UnavaibleDatePeriodException("Некорректные даты бронирования");
-        }
+        checkPeriod(bookingDtoRequest);
 
         User user = userRepository.findById(userId).orElseThrow(
                 () -> new ItemNotFoundException("Пользователь не найден " + userId)
         );
-        Item item = itemRepository.findById(bookingDtoRequest.getItemId()).orElseThrow(
+        bookingItemLocks.lockUntilCompletion(bookingDtoRequest.getItemId());
+        Item item = itemRepository.findForUpdateById(bookingDtoRequest.getItemId()).orElseThrow(
                 () -> new ItemNotFoundException("Предмет не найден " + bookingDtoRequest.getItemId())
         );
 
-        if (userId.equals(item.getOwner().getId())) {
-            throw new UnavailableBookingException("Владельцу запрещено бронировать свой предмет " + item.getId());
-        }
-
-        if (!item.getAvailable()) {
-            throw new ItemNotAvailibleException("Нельзя забронировать недоступный предмет " + item.getId());
-        }
+        checkBookable(userId, item);
 
         Booking booking = bookingMapper.mapToModel(bookingDtoRequest, item, user);
         booking.setStatus(WAITING);
         if (itemRepository.existsItemByIdAndAvailableIsTrue(item.getId())) {
             if (isBookingAvailable(booking)) {
                 booking = bookingRepository.save(booking);
+                bookingIntervalIndex.onSaved(booking);
+                itemBookingCache.invalidate(item.getId());
                 return BookingMapper.mapToDto(booking, item);
             } else
                 throw new DateConflictException(
@@ -79,38 +94,99 @@ public class BookingServiceImpl implements BookingService {
 
     }
 
-    private boolean isBookingAvailable(Booking booking) {
-        List<Booking> activeBookings = new ArrayList<>(
-                bookingRepository.getActiveBookings(booking.getItem().getId()));
-        final LocalDateTime startTime = booking.getStart();
-        final LocalDateTime endTime = booking.getEnd();
-        LocalDateTime leftBorder = LocalDateTime.now();
-        LocalDateTime rightBorder;
-
-        if (activeBookings.size() > 0) {
-            for (Booking activeBooking : activeBookings) {
-                rightBorder = activeBooking.getStart();
-
-                if (leftBorder.isBefore(startTime) && rightBorder.isAfter(endTime)) {
-                    return true;
-
-                } else if (leftBorder.isAfter(endTime)) {
-                    return false;
+    @Override
+    @Transactional
+    public List<BookingBatchResult> addBookings(Long userId, List<BookingDtoRequest> bookingDtoRequests) {
+        User user = userRepository.findById(userId).orElseThrow(
+                () -> new UserNotFoundException("Пользователь не найден " + userId)
+        );
+        Set<Long> itemIds = bookingDtoRequests.stream()
+                .map(BookingDtoRequest::getItemId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toCollection(TreeSet::new));
+        Map<Long, Item> items = new HashMap<>();
+        if (!itemIds.isEmpty()) {
+            bookingItemLocks.lockAllUntilCompletion(itemIds);
+            itemRepository.lockAllByIdIn(itemIds);
+            itemRepository.findAllWithOwnerByIdIn(itemIds).forEach(item -> items.put(item.getId(), item));
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<BookingBatchResult> results = new ArrayList<>();
+        List<Booking> bookings = new ArrayList<>();
+        for (int i = 0; i < bookingDtoRequests.size(); i++) {
+            BookingDtoRequest bookingDtoRequest = bookingDtoRequests.get(i);
+            try {
+                checkPeriod(bookingDtoRequest);
+                if (bookingDtoRequest.getStart().isBefore(now)) {
+                    throw new UnavaibleDatePeriodException("Бронирование не может начинаться в прошлом");
+                }
+                Item item = items.get(bookingDtoRequest.getItemId());
+                if (item == null) {
+                    throw new ItemNotFoundException("Предмет не найден " + bookingDtoRequest.getItemId());
                 }
-                leftBorder = rightBorder;
+                checkBookable(userId, item);
+                Booking booking = BookingMapper.mapToModel(bookingDtoRequest, item, user);
+                if (!isBookingAvailable(booking)) {
+                    throw new DateConflictException(
+                            String.format("Некорректный период %s по %s", booking.getStart(), booking.getEnd()));
+                }
+                bookings.add(booking);
+                results.add(BookingBatchResult.builder().index(i).build());
+            } catch (UnavaibleDatePeriodException | ItemNotFoundException | UnavailableBookingException
+                     | ItemNotAvailibleException | DateConflictException e) {
+                results.add(BookingBatchResult.builder().index(i).error(e.getMessage()).build());
+            }
+        }
+
+        Iterator<Booking> saved = bookingRepository.saveAll(bookings).iterator();
+        for (BookingBatchResult result : results) {
+            if (result.getError() == null) {
+                Booking booking = saved.next();
+                bookingIntervalIndex.onSaved(booking);
+                itemBookingCache.invalidate(booking.getItem().getId());
+                result.setBooking(BookingMapper.mapToDto(booking, booking.getItem()));
             }
-            return leftBorder.isBefore(startTime);
+        }
+        return results;
+    }
 
-        } else return true;
+    private void checkPeriod(BookingDtoRequest bookingDtoRequest) {
+        LocalDateTime bookingStart = bookingDtoRequest.getStart();
+        LocalDateTime bookingEnd = bookingDtoRequest.getEnd();
+        if (bookingStart == null || bookingEnd == null
+                || bookingEnd.isBefore(bookingStart) || bookingEnd.equals(bookingStart)) {
+            throw new UnavaibleDatePeriodException("Некорректные даты бронирования");
+        }
     }
 
+    private void checkBookable(Long userId, Item item) {
+        if (userId.equals(item.getOwner().getId())) {
+            throw new UnavailableBookingException("Владельцу запрещено бронировать свой предмет " + item.getId());
+        }
+
+        if (!item.getAvailable()) {
+            throw new ItemNotAvailibleException("Нельзя забронировать недоступный предмет " + item.getId());
+        }
+    }
+
+    private boolean isBookingAvailable(Booking booking) {
+        return bookingIntervalIndex.isFree(booking.getItem().getId(), booking.getStart(), booking.getEnd());
+    }
+
+    /**
+     * Бронирование перечитывается с блокировкой строки уже под блокировками предмета,
+     * поэтому статус и пересечения проверяются по актуальным данным, а отмена
+     * просроченного бронирования не затирается подтверждением.
+     */
     @Override
     @Transactional
     public BookingDto patchBooking(Long userId, Long bookingId, Boolean approved) {
-        Booking booking = bookingRepository.findById(bookingId).orElseThrow(
+        Long itemId = bookingRepository.findItemIdById(bookingId).orElseThrow(
                 () -> new ItemNotFoundException("Запрос не найден " + bookingId)
         );
-        Item item = itemRepository.findById(booking.getItem().getId()).orElseThrow(
+        bookingItemLocks.lockUntilCompletion(itemId);
+        Item item = itemRepository.findForUpdateById(itemId).orElseThrow(
                 () -> new ItemNotFoundException("Предмет не найден")
         );
         User user = userRepository.findById(userId).orElseThrow(
@@ -119,17 +195,145 @@ public class BookingServiceImpl implements BookingService {
         if (!item.getOwner().getId().equals(user.getId())) {
             throw new UserNotFoundException("Доступ запрещен!");
         }
+        Booking booking = bookingRepository.findForUpdateById(bookingId).orElseThrow(
+                () -> new ItemNotFoundException("Запрос не найден " + bookingId)
+        );
         BookingStatus status = convertBooleanToStatusEnum(approved);
 
         if (booking.getStatus().equals(status)) {
             throw new IllegalArgumentException("Статус был установлен!");
         }
+        if (isFinal(booking.getStatus())) {
+            throw new IllegalArgumentException("Статус бронирования уже не меняется: " + booking.getStatus());
+        }
+        if (status == BookingStatus.APPROVED && !isBookingAvailable(booking)) {
+            throw new DateConflictException(
+                    String.format("Некорректный период %s по %s", booking.getStart(), booking.getEnd()));
+        }
 
         booking.setStatus(status);
         booking = bookingRepository.save(booking);
+        bookingIntervalIndex.onSaved(booking);
+        itemBookingCache.invalidate(item.getId());
         return BookingMapper.mapToDto(booking, item);
     }
 
+    /**
+     * Подтверждение или отклонение нескольких бронирований владельцем.
+     * Сначала берутся блокировки предметов, и только потом одним запросом читаются права
+     * и статусы. UPDATE меняет строку, только если ее статус остался прочитанным,
+     * поэтому параллельная отмена просроченного бронирования не затирается.
+     */
+    @Override
+    @Transactional
+    public List<BookingBulkResult> patchBookings(Long userId, List<Long> bookingIds, Boolean approved) {
+        userRepository.findById(userId).orElseThrow(
+                () -> new UserNotFoundException("Пользователь не найден " + userId)
+        );
+        BookingStatus status = convertBooleanToStatusEnum(approved);
+        Set<Long> ids = bookingIds.stream()
+                .filter(Objects::nonNull)
+                .collect(Collectors.toCollection(TreeSet::new));
+        Map<Long, BookingOwnershipDto> bookings = new HashMap<>();
+        if (!ids.isEmpty()) {
+            Set<Long> itemIds = new TreeSet<>(bookingRepository.findItemIdsByIdIn(ids));
+            if (!itemIds.isEmpty()) {
+                bookingItemLocks.lockAllUntilCompletion(itemIds);
+                itemRepository.lockAllByIdIn(itemIds);
+                bookingRepository.findOwnershipByIdIn(ids).forEach(booking -> bookings.put(booking.getId(), booking));
+            }
+        }
+
+        List<BookingBulkResult> results = new ArrayList<>();
+        Map<Long, BookingBulkResult> changedResults = new HashMap<>();
+        List<BookingOwnershipDto> changed = new ArrayList<>();
+        Set<Long> seen = new HashSet<>();
+        for (Long bookingId : bookingIds) {
+            BookingOwnershipDto booking = bookings.get(bookingId);
+            String error = null;
+            if (booking == null) {
+                error = "Запрос не найден " + bookingId;
+            } else if (!seen.add(bookingId)) {
+                error = "Бронирование указано повторно";
+            } else if (!booking.getOwnerId().equals(userId)) {
+                error = "Доступ запрещен!";
+            } else if (booking.getStatus() == status) {
+                error = "Статус был установлен!";
+            } else if (isFinal(booking.getStatus())) {
+                error = "Статус бронирования уже не меняется: " + booking.getStatus();
+            } else if (status == BookingStatus.APPROVED && !isApprovable(booking, changed)) {
+                error = String.format("Некорректный период %s по %s", booking.getStart(), booking.getEnd());
+            }
+            BookingBulkResult result;
+            if (error == null) {
+                changed.add(booking);
+                result = BookingBulkResult.builder().bookingId(bookingId).status(status).build();
+                changedResults.put(bookingId, result);
+            } else {
+                result = BookingBulkResult.builder().bookingId(bookingId)
+                        .status(booking == null ? null : booking.getStatus()).error(error).build();
+            }
+            results.add(result);
+        }
+
+        if (!changed.isEmpty()) {
+            int updated = 0;
+            Map<BookingStatus, List<Long>> idsByStatus = changed.stream()
+                    .collect(Collectors.groupingBy(BookingOwnershipDto::getStatus,
+                            Collectors.mapping(BookingOwnershipDto::getId, Collectors.toList())));
+            for (Map.Entry<BookingStatus, List<Long>> entry : idsByStatus.entrySet()) {
+                updated += bookingRepository.updateStatusByIdInAndStatus(entry.getValue(), entry.getKey(), status);
+            }
+            if (updated < changed.size()) {
+                changed = dropChangedConcurrently(changed, status, changedResults);
+            }
+            for (BookingOwnershipDto booking : changed) {
+                bookingIntervalIndex.onStatusChanged(booking.getItemId(), booking.getId(),
+                        booking.getStart(), booking.getEnd(), status);
+                itemBookingCache.invalidate(booking.getItemId());
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Строки, которые UPDATE не тронул, успел поменять кто-то без блокировки предмета
+     * (например, отмена просроченных ожиданий). Для них отдаем актуальный статус и ошибку.
+     */
+    private List<BookingOwnershipDto> dropChangedConcurrently(List<BookingOwnershipDto> changed, BookingStatus status,
+                                                              Map<Long, BookingBulkResult> changedResults) {
+        Map<Long, BookingStatus> current = new HashMap<>();
+        bookingRepository.findOwnershipByIdIn(changed.stream().map(BookingOwnershipDto::getId)
+                        .collect(Collectors.toList()))
+                .forEach(booking -> current.put(booking.getId(), booking.getStatus()));
+        List<BookingOwnershipDto> applied = new ArrayList<>();
+        for (BookingOwnershipDto booking : changed) {
+            BookingStatus actual = current.get(booking.getId());
+            if (actual == status) {
+                applied.add(booking);
+            } else {
+                BookingBulkResult result = changedResults.get(booking.getId());
+                result.setStatus(actual);
+                result.setError("Статус бронирования изменился: " + actual);
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * Индекс обновится только после коммита, поэтому бронирования, подтвержденные
+     * в этом же пакете, проверяются отдельно.
+     */
+    private boolean isApprovable(BookingOwnershipDto booking, List<BookingOwnershipDto> approved) {
+        if (!bookingIntervalIndex.isFree(booking.getItemId(), booking.getStart(), booking.getEnd())) {
+            return false;
+        }
+        return approved.stream()
+                .noneMatch(other -> other.getItemId().equals(booking.getItemId())
+                        && other.getStart().isBefore(booking.getEnd())
+                        && booking.getStart().isBefore(other.getEnd()));
+    }
+
     @Override
     public BookingDto findById(Long userId, Long bookingId) {
         User user = userRepository.findById(userId).orElseThrow(
@@ -138,10 +342,10 @@ public class BookingServiceImpl implements BookingService {
         if (Objects.isNull(user)) {
             throw new UserNotFoundException("Пользователь не найден");
         }
-        Booking booking = bookingRepository.findById(bookingId).orElseThrow(
-                () -> new ItemNotFoundException("Запрос не найден " + bookingId)
-        );
-        if (userId != booking.getBooker().getId() && userId != booking.getItem().getOwner().getId()) {
+        Booking booking = bookingRepository.findById(bookingId)
+                .or(() -> bookingArchiveRepository.findById(bookingId).map(BookingMapper::mapToModel))
+                .orElseThrow(() -> new ItemNotFoundException("Запрос не найден " + bookingId));
+        if (!userId.equals(booking.getBooker().getId()) && !userId.equals(booking.getItem().getOwner().getId())) {
             throw new UserNotFoundException("Доступ запрещен");
         }
         return BookingMapper.mapToDto(booking, booking.getItem());
@@ -149,76 +353,122 @@ public class BookingServiceImpl implements BookingService {
 
     @Override
     public List<BookingDto> findAllByUser(Long userId, String state, Pageable pageable) {
-        User user = userRepository.findById(userId).orElseThrow(
+        return findAll(BookingRole.BOOKER, userId, state, pageable);
+    }
+
+    @Override
+    public List<BookingDto> findAllByOwner(Long userId, String state, Pageable pageable) {
+        return findAll(BookingRole.OWNER, userId, state, pageable);
+    }
+
+    @Override
+    public BookingPage findAllByUser(Long userId, String state, String cursor, int size) {
+        return findPage(BookingRole.BOOKER, userId, state, cursor, size);
+    }
+
+    @Override
+    public BookingPage findAllByOwner(Long userId, String state, String cursor, int size) {
+        return findPage(BookingRole.OWNER, userId, state, cursor, size);
+    }
+
+    @Override
+    public List<BookingCompactDto> findAllByUserCompact(Long userId, String state, Pageable pageable) {
+        return findAllCompact(BookingRole.BOOKER, userId, state, pageable);
+    }
+
+    @Override
+    public List<BookingCompactDto> findAllByOwnerCompact(Long userId, String state, Pageable pageable) {
+        return findAllCompact(BookingRole.OWNER, userId, state, pageable);
+    }
+
+    @Override
+    public BookingCompactPage findAllByUserCompact(Long userId, String state, String cursor, int size) {
+        return findCompactPage(BookingRole.BOOKER, userId, state, cursor, size);
+    }
+
+    @Override
+    public BookingCompactPage findAllByOwnerCompact(Long userId, String state, String cursor, int size) {
+        return findCompactPage(BookingRole.OWNER, userId, state, cursor, size);
+    }
+
+    @Override
+    public BookingStatsDto getStatsByUser(Long userId) {
+        return getStats(BookingRole.BOOKER, userId);
+    }
+
+    @Override
+    public BookingStatsDto getStatsByOwner(Long userId) {
+        return getStats(BookingRole.OWNER, userId);
+    }
+
+    @Override
+    public BookingSweepStats getSweepStats() {
+        return bookingExpirySweeper.getStats();
+    }
+
+    private BookingStatsDto getStats(BookingRole role, Long userId) {
+        userRepository.findById(userId).orElseThrow(
+                () -> new UserNotFoundException("Пользователь не найден " + userId));
+        return bookingRepository.countBookings(role, userId, LocalDateTime.now());
+    }
+
+    private List<BookingDto> findAll(BookingRole role, Long userId, String state, Pageable pageable) {
+        userRepository.findById(userId).orElseThrow(
                 () -> new UserNotFoundException("Пользователь не найден " + userId));
         BookingState bookingState = parseBookingState(state);
-        LocalDateTime now = LocalDateTime.now();
-        List<Booking> bookings;
-        switch (bookingState) {
-            case REJECTED:
-                bookings = bookingRepository.findAllByBookerIdAndStatusOrderByStartDesc(userId, BookingStatus.REJECTED, pageable);
-                break;
-            case WAITING:
-                bookings = bookingRepository.findAllByBookerIdAndStatusOrderByStartDesc(userId, BookingStatus.WAITING, pageable);
-                break;
-            case CURRENT:
-                bookings = bookingRepository.findAllByBookerIdAndStartIsBeforeAndEndIsAfterOrderByStartDesc(
-                        userId, now, now, pageable);
-                break;
-            case FUTURE:
-                bookings = bookingRepository
-                        .findAllByBookerIdAndStartIsAfterOrderByStartDesc(userId, LocalDateTime.now(), pageable);
-                break;
-            case PAST:
-                bookings = bookingRepository
-                        .findAllByBookerIdAndEndIsBeforeOrderByStartDesc(userId, LocalDateTime.now(), pageable);
-                break;
-            case ALL:
-                bookings = bookingRepository.findAllByBookerIdOrderByStartDesc(userId, pageable);
-                break;
-            default:
-                throw new IllegalArgumentException("Unknown state: Error");
-        }
-        return bookings.stream()
-                .map(booking -> bookingMapper.mapToDto(booking, booking.getItem()))
-                .collect(Collectors.toCollection(ArrayList::new));
 
+        return bookingRepository.findBookings(role, userId, bookingState, LocalDateTime.now(), pageable);
     }
 
-    @Override
-    public List<BookingDto> findAllByOwner(Long userId, String state, Pageable pageable) {
-        List<Booking> bookings;
-        User user = userRepository.findById(userId).orElseThrow(
+    private BookingPage findPage(BookingRole role, Long userId, String state, String cursor, int size) {
+        userRepository.findById(userId).orElseThrow(
                 () -> new UserNotFoundException("Пользователь не найден " + userId));
+        BookingState bookingState = parseBookingState(state);
+        BookingCursor after = cursor == null ? null : BookingCursor.decode(cursor);
+
+        List<BookingDto> bookings = bookingRepository.findBookingsAfter(
+                role, userId, bookingState, LocalDateTime.now(), after, size + 1);
+        String nextCursor = null;
+        if (bookings.size() > size) {
+            bookings = new ArrayList<>(bookings.subList(0, size));
+            BookingDto last = bookings.get(size - 1);
+            nextCursor = new BookingCursor(last.getStart(), last.getId()).encode();
+        }
+        return new BookingPage(bookings, nextCursor);
+    }
 
+    /**
+     * Отмененное бронирование больше не меняется. Отклоненное владелец может подтвердить позже,
+     * если период все еще свободен.
+     */
+    private List<BookingCompactDto> findAllCompact(BookingRole role, Long userId, String state, Pageable pageable) {
+        userRepository.findById(userId).orElseThrow(
+                () -> new UserNotFoundException("Пользователь не найден " + userId));
         BookingState bookingState = parseBookingState(state);
-        LocalDateTime now = LocalDateTime.now();
 
-        switch (bookingState) {
-            case REJECTED:
-                bookings = bookingRepository.findAllByItemOwnerIdAndStatusOrderByStartDesc(userId, BookingStatus.REJECTED, pageable);
-                break;
-            case WAITING:
-                bookings = bookingRepository.findAllByItemOwnerIdAndStatusOrderByStartDesc(userId, BookingStatus.WAITING, pageable);
-                break;
-            case CURRENT:
-                bookings = bookingRepository.findAllByItemOwnerIdAndStartIsBeforeAndEndIsAfterOrderByStartDesc(user.getId(), now, now, pageable);
-                break;
-            case FUTURE:
-                bookings = bookingRepository.findAllByItemOwnerIdAndStartIsAfterOrderByStartDesc(userId, LocalDateTime.now(), pageable);
-                break;
-            case PAST:
-                bookings = bookingRepository.findAllByItemOwnerIdAndEndIsBeforeOrderByStartDesc(userId, LocalDateTime.now(), pageable);
-                break;
-            case ALL:
-                bookings = bookingRepository.findAllByItemOwnerIdOrderByStartDesc(userId, pageable);
-                break;
-            default:
-                throw new IllegalArgumentException("Unknown state: Error");
-        }
-        return bookings.stream()
-                .map(booking -> bookingMapper.mapToDto(booking, booking.getItem()))
-                .collect(Collectors.toCollection(ArrayList::new));
+        return bookingRepository.findCompactBookings(role, userId, bookingState, LocalDateTime.now(), pageable);
+    }
+
+    private BookingCompactPage findCompactPage(BookingRole role, Long userId, String state, String cursor,
+                                               int size) {
+        userRepository.findById(userId).orElseThrow(
+                () -> new UserNotFoundException("Пользователь не найден " + userId));
+        BookingState bookingState = parseBookingState(state);
+        BookingCursor after = cursor == null ? null : BookingCursor.decode(cursor);
+
+        List<BookingCompactDto> bookings = bookingRepository.findCompactBookingsAfter(
+                role, userId, bookingState, LocalDateTime.now(), after, size + 1);
+        String nextCursor = null;
+        if (bookings.size() > size) {
+            bookings = new ArrayList<>(bookings.subList(0, size));
+            BookingCompactDto last = bookings.get(size - 1);
+            nextCursor = new BookingCursor(last.getStart(), last.getId()).encode();
+        }
+        return new BookingCompactPage(bookings, nextCursor);
+    }
+
+    private static boolean isFinal(BookingStatus status) {
+        return status == BookingStatus.CANCELED;
     }
 
     private BookingStatus convertBooleanToStatusEnum(Boolean approved) {
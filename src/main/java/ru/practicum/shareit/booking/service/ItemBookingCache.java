@@ -0,0 +1,203 @@
+package ru.practicum.shareit.booking.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.shareit.booking.dto.BookingDtoItem;
+import ru.practicum.shareit.booking.dto.LastNextBookingDto;
+import ru.practicum.shareit.booking.storage.BookingRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Кэш lastBooking/nextBooking по предметам.
+ * Для предмета хранится только окно, прочитанное ROW_NUMBER() запросом: последнее начавшееся
+ * и ближайшее будущее подтвержденное бронирование. Окно верно, пока не наступило начало следующего,
+ * после этого предмет перечитывается.
+ * Запись сбрасывается после коммита создания или смены статуса бронирования предмета,
+ * число предметов ограничено, лишние вытесняются.
+ */
+@Component
+public class ItemBookingCache {
+    private final BookingRepository bookingRepository;
+    private final int maxItems;
+    private final ConcurrentMap<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong versions = new AtomicLong();
+    private final AtomicLong evictedVersion = new AtomicLong();
+
+    public ItemBookingCache(BookingRepository bookingRepository,
+                            @Value("${shareit.item.booking-cache.max-items:10000}") int maxItems) {
+        this.bookingRepository = bookingRepository;
+        this.maxItems = maxItems;
+    }
+
+    public LastNextBookingDto get(Long itemId, LocalDateTime now) {
+        return getAll(List.of(itemId), now).get(itemId);
+    }
+
+    /**
+     * Последнее и следующее бронирование для каждого предмета.
+     * Отсутствующие в кэше предметы загружаются вместе одним вызовом findLastAndNextBookings.
+     */
+    public Map<Long, LastNextBookingDto> getAll(Collection<Long> itemIds, LocalDateTime now) {
+        Map<Long, LastNextBookingDto> result = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        long loadVersion = versions.get();
+        for (Long itemId : itemIds) {
+            Entry entry = entries.get(itemId);
+            if (entry != null && entry.window != null && entry.window.covers(now)) {
+                result.put(itemId, entry.window.toDto(itemId));
+            } else {
+                missing.add(itemId);
+            }
+        }
+        if (!missing.isEmpty()) {
+            Map<Long, LastNextBookingDto> loaded = bookingRepository.findLastAndNextBookings(missing, now);
+            for (Long itemId : missing) {
+                LastNextBookingDto lastNext = loaded.get(itemId);
+                Window window = lastNext == null
+                        ? new Window(now, null, null)
+                        : new Window(now, lastNext.getLastBooking(), lastNext.getNextBooking());
+                result.put(itemId, window.toDto(itemId));
+                put(itemId, window, loadVersion);
+            }
+            trimToSize();
+        }
+        return result;
+    }
+
+    /**
+     * Окно предмета из кэша без обращения к базе. Если окна нет, Lookup запоминает версию
+     * до чтения, и окно, прочитанное вызывающим своим запросом, кладется через complete.
+     */
+    public Lookup lookup(Long itemId, LocalDateTime now) {
+        long loadVersion = versions.get();
+        Entry entry = entries.get(itemId);
+        LastNextBookingDto cached = entry != null && entry.window != null && entry.window.covers(now)
+                ? entry.window.toDto(itemId) : null;
+        return new Lookup(itemId, now, loadVersion, cached);
+    }
+
+    public void invalidate(Long itemId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(itemId);
+                }
+            });
+        } else {
+            evict(itemId);
+        }
+    }
+
+    /**
+     * Сброс оставляет у ключа пустую запись с новой версией. Загрузка, начатая раньше сброса,
+     * видит версию больше своей и не кладет прочитанное окно, остальные предметы это не задевает.
+     */
+    private void evict(Long itemId) {
+        entries.put(itemId, new Entry(versions.incrementAndGet(), null));
+        trimToSize();
+    }
+
+    private void put(Long itemId, Window window, long loadVersion) {
+        entries.compute(itemId, (id, current) -> {
+            long version = current == null ? evictedVersion.get() : current.version;
+            return version > loadVersion ? current : new Entry(version, window);
+        });
+    }
+
+    /**
+     * Вытесненная запись уносит с собой версию сброса, поэтому ее версия запоминается
+     * в evictedVersion до удаления: загрузки старше нее для отсутствующих ключей не кэшируются.
+     */
+    private void trimToSize() {
+        Iterator<Map.Entry<Long, Entry>> iterator = entries.entrySet().iterator();
+        while (entries.size() > maxItems && iterator.hasNext()) {
+            Map.Entry<Long, Entry> victim = iterator.next();
+            evictedVersion.accumulateAndGet(victim.getValue().version, Math::max);
+            entries.remove(victim.getKey(), victim.getValue());
+        }
+    }
+
+    public final class Lookup {
+        private final Long itemId;
+        private final LocalDateTime now;
+        private final long loadVersion;
+        private final LastNextBookingDto cached;
+
+        private Lookup(Long itemId, LocalDateTime now, long loadVersion, LastNextBookingDto cached) {
+            this.itemId = itemId;
+            this.now = now;
+            this.loadVersion = loadVersion;
+            this.cached = cached;
+        }
+
+        /**
+         * Окно из кэша, null - его надо прочитать на момент getNow().
+         */
+        public LastNextBookingDto getCached() {
+            return cached;
+        }
+
+        public LocalDateTime getNow() {
+            return now;
+        }
+
+        public LastNextBookingDto complete(BookingDtoItem last, BookingDtoItem next) {
+            Window window = new Window(now, last, next);
+            put(itemId, window, loadVersion);
+            trimToSize();
+            return window.toDto(itemId);
+        }
+    }
+
+    private static final class Entry {
+        private final long version;
+        private final Window window;
+
+        private Entry(long version, Window window) {
+            this.version = version;
+            this.window = window;
+        }
+    }
+
+    /**
+     * Последнее и следующее бронирование на момент loadedAt. Пока не началось следующее,
+     * новых начавшихся бронирований не появилось, поэтому окно верно для любого момента до его начала.
+     */
+    static final class Window {
+        private final LocalDateTime loadedAt;
+        private final BookingDtoItem last;
+        private final BookingDtoItem next;
+
+        Window(LocalDateTime loadedAt, BookingDtoItem last, BookingDtoItem next) {
+            this.loadedAt = loadedAt;
+            this.last = last;
+            this.next = next;
+        }
+
+        boolean covers(LocalDateTime now) {
+            return !now.isBefore(loadedAt) && (next == null || now.isBefore(next.getStart()));
+        }
+
+        LastNextBookingDto toDto(Long itemId) {
+            return new LastNextBookingDto(itemId, copy(last), copy(next));
+        }
+
+        private static BookingDtoItem copy(BookingDtoItem booking) {
+            return booking == null ? null
+                    : new BookingDtoItem(booking.getId(), booking.getBookerId(), booking.getStart(), booking.getEnd());
+        }
+    }
+}
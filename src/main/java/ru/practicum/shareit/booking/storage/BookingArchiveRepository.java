@@ -0,0 +1,21 @@
+package ru.practicum.shareit.booking.storage;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import ru.practicum.shareit.booking.model.ArchivedBooking;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+@Repository
+public interface BookingArchiveRepository extends JpaRepository<ArchivedBooking, Long> {
+    @Modifying
+    @Query(value = "INSERT INTO bookings_archive (booking_id, start_time, end_time, item_id, booker_id, status) " +
+            "SELECT booking_id, start_time, end_time, item_id, booker_id, status " +
+            "FROM bookings WHERE booking_id IN (?1)", nativeQuery = true)
+    int copyFromBookings(Collection<Long> bookingIds);
+
+    boolean existsByBookerIdAndItemIdAndEndBefore(long bookerId, long itemId, LocalDateTime now);
+}
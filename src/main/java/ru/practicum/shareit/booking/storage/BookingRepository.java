@@ -2,20 +2,27 @@ package ru.practicum.shareit.booking.storage;
 
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
+import ru.practicum.shareit.booking.dto.BookingOwnershipDto;
 import ru.practicum.shareit.booking.model.Booking;
-import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.dto.ItemPeriodDto;
 
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
 import java.time.LocalDateTime;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
-@Repository
-public interface BookingRepository extends JpaRepository<Booking, Long> {
-    List<Booking> findAllByBookerIdOrderByStartDesc(Long bookerId, Pageable pageable);
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
+@Repository
+public interface BookingRepository extends JpaRepository<Booking, Long>, BookingRepositoryCustom {
     @Query("SELECT b FROM bookings b " +
             "WHERE b.item.id = ?1 " +
             "AND (b.status = 'APPROVED' OR b.status IS NULL) " +
@@ -24,37 +31,46 @@ public interface BookingRepository extends JpaRepository<Booking, Long> {
     )
     Collection<Booking> getActiveBookings(Long itemId);
 
-    Optional<Booking> findFirstByBookerIdAndItemIdAndEndBefore(long id, long itemId, LocalDateTime now);
-
-    List<Booking> findAllByItemOwnerIdOrderByStartDesc(Long bookerId, Pageable pageable);
+    @Query("select b.item.id from bookings b where b.id = ?1")
+    Optional<Long> findItemIdById(Long bookingId);
 
-    List<Booking> findAllByItemOwnerIdAndStatusOrderByStartDesc(Long bookerId, BookingStatus status, Pageable pageable);
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select b from bookings b where b.id = ?1")
+    Optional<Booking> findForUpdateById(Long bookingId);
 
-    List<Booking> findAllByItemOwnerIdAndStartIsBeforeAndEndIsAfterOrderByStartDesc(
-            Long bookerId, LocalDateTime start, LocalDateTime end, Pageable pageable);
+    @Query("select distinct b.item.id from bookings b where b.id in ?1")
+    List<Long> findItemIdsByIdIn(Collection<Long> bookingIds);
 
-    List<Booking> findAllByItemOwnerIdAndEndIsBeforeOrderByStartDesc(Long bookerId, LocalDateTime start, Pageable pageable);
+    @Query("select new ru.practicum.shareit.booking.dto.BookingOwnershipDto(" +
+            "b.id, i.id, i.owner.id, b.status, b.start, b.end) " +
+            "from bookings b join b.item i " +
+            "where b.id in ?1")
+    List<BookingOwnershipDto> findOwnershipByIdIn(Collection<Long> bookingIds);
 
-    List<Booking> findAllByItemOwnerIdAndStartIsAfterOrderByStartDesc(Long bookerId, LocalDateTime start, Pageable pageable);
+    @Query("select b.id from bookings b where b.end < ?1 order by b.end, b.id")
+    List<Long> findIdsByEndBefore(LocalDateTime cutoff, Pageable pageable);
 
-    List<Booking> findAllByBookerIdAndStartIsAfterOrderByStartDesc(Long bookerId, LocalDateTime start, Pageable pageable);
+    @Modifying
+    @Query("delete from bookings b where b.id in ?1")
+    int deleteAllByIdIn(Collection<Long> bookingIds);
 
-    List<Booking> findAllByBookerIdAndStatusOrderByStartDesc(Long bookerId, BookingStatus status, Pageable pageable);
+    @Query("select b.id from bookings b where b.status = ?1 and b.start < ?2 order by b.start, b.id")
+    List<Long> findIdsByStatusAndStartBefore(BookingStatus status, LocalDateTime start, Pageable pageable);
 
-    List<Booking> findAllByBookerIdAndEndIsBeforeOrderByStartDesc(Long bookerId, LocalDateTime start, Pageable pageable);
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update bookings b set b.status = ?3 where b.id in ?1 and b.status = ?2")
+    int updateStatusByIdInAndStatus(Collection<Long> bookingIds, BookingStatus from, BookingStatus to);
 
-    List<Booking> findAllByBookerIdAndStartIsBeforeAndEndIsAfterOrderByStartDesc(Long bookerId, LocalDateTime start, LocalDateTime end, Pageable pageable);
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "256"))
+    @Query("select new ru.practicum.shareit.item.dto.ItemPeriodDto(b.start, b.end) " +
+            "from bookings b " +
+            "where b.item.id = ?1 " +
+            "and (b.status = 'APPROVED' or b.status is null) " +
+            "and b.start < ?3 and b.end > ?2 " +
+            "order by b.start")
+    Stream<ItemPeriodDto> streamBusyPeriods(Long itemId, LocalDateTime from, LocalDateTime to);
 
-    Optional<Booking> findFirstByItemIdAndStatusAndStartBeforeOrderByStartDesc(
-            long itemId, BookingStatus bookingStatus, LocalDateTime now);
-
-    Optional<Booking> findFirstByItemIdAndStatusAndStartAfterOrderByStart(
-            long itemId, BookingStatus bookingStatus, LocalDateTime now);
-
-    List<Booking> findAllByItemInAndStartLessThanEqualAndStatusIsOrderByStartDesc(
-            List<Item> items, LocalDateTime now, BookingStatus status);
+    Optional<Booking> findFirstByBookerIdAndItemIdAndEndBefore(long id, long itemId, LocalDateTime now);
 
-    List<Booking> findAllByItemInAndStartAfterAndStatusIsOrderByStartAsc(
-            List<Item> items, LocalDateTime now, BookingStatus status);
 
 }
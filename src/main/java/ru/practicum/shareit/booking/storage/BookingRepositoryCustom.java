@@ -0,0 +1,30 @@
+package ru.practicum.shareit.booking.storage;
+
+import org.springframework.data.domain.Pageable;
+import ru.practicum.shareit.booking.dto.BookingCompactDto;
+import ru.practicum.shareit.booking.dto.BookingDto;
+import ru.practicum.shareit.booking.dto.BookingStatsDto;
+import ru.practicum.shareit.booking.dto.LastNextBookingDto;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+public interface BookingRepositoryCustom {
+    List<BookingDto> findBookings(BookingRole role, Long userId, BookingState state, LocalDateTime now,
+                                  Pageable pageable);
+
+    List<BookingDto> findBookingsAfter(BookingRole role, Long userId, BookingState state, LocalDateTime now,
+                                       BookingCursor cursor, int limit);
+
+    List<BookingCompactDto> findCompactBookings(BookingRole role, Long userId, BookingState state, LocalDateTime now,
+                                                Pageable pageable);
+
+    List<BookingCompactDto> findCompactBookingsAfter(BookingRole role, Long userId, BookingState state,
+                                                     LocalDateTime now, BookingCursor cursor, int limit);
+
+    BookingStatsDto countBookings(BookingRole role, Long userId, LocalDateTime now);
+
+    Map<Long, LastNextBookingDto> findLastAndNextBookings(Collection<Long> itemIds, LocalDateTime now);
+}
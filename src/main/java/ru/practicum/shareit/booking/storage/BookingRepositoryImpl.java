@@ -0,0 +1,374 @@
+package ru.practicum.shareit.booking.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import ru.practicum.shareit.booking.dto.BookingCompactDto;
+import ru.practicum.shareit.booking.dto.BookingDto;
+import ru.practicum.shareit.booking.dto.BookingDtoItem;
+import ru.practicum.shareit.booking.dto.BookingStatsDto;
+import ru.practicum.shareit.booking.dto.LastNextBookingDto;
+import ru.practicum.shareit.booking.model.ArchivedBooking;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.request.model.ItemRequest;
+import ru.practicum.shareit.user.model.User;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Tuple;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Join;
+import javax.persistence.criteria.JoinType;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Единый построитель запросов списков бронирований по роли, состоянию и странице.
+ * Строки проецируются конструктором прямо в BookingDto или, для компактного вида, в BookingCompactDto
+ * только по нужным ему столбцам, поэтому страница читается одним SQL без догрузки связанных сущностей.
+ * Страница задается либо смещением, либо курсором (start_time, booking_id).
+ * Архив bookings_archive подмешивается слиянием по тому же порядку, только когда страница до него доходит.
+ */
+public class BookingRepositoryImpl implements BookingRepositoryCustom {
+    private static final String LAST_NEXT_SQL = "SELECT booking_id, booker_id, item_id, start_time, end_time, is_last " +
+            "FROM (SELECT b.booking_id, b.booker_id, b.item_id, b.start_time, b.end_time, " +
+            "CASE WHEN b.start_time <= :now THEN 1 ELSE 0 END AS is_last, " +
+            "ROW_NUMBER() OVER (PARTITION BY b.item_id, CASE WHEN b.start_time <= :now THEN 1 ELSE 0 END " +
+            "ORDER BY CASE WHEN b.start_time <= :now THEN b.start_time END DESC, " +
+            "CASE WHEN b.start_time > :now THEN b.start_time END ASC) AS rn " +
+            "FROM bookings b " +
+            "WHERE b.item_id IN (:itemIds) AND b.status = 'APPROVED') ranked " +
+            "WHERE rn = 1";
+    private static final String ARCHIVE_LAST_SQL = "SELECT booking_id, booker_id, item_id, start_time, end_time, " +
+            "1 AS is_last " +
+            "FROM (SELECT b.booking_id, b.booker_id, b.item_id, b.start_time, b.end_time, " +
+            "ROW_NUMBER() OVER (PARTITION BY b.item_id ORDER BY b.start_time DESC) AS rn " +
+            "FROM bookings_archive b " +
+            "WHERE b.item_id IN (:itemIds) AND b.status = 'APPROVED' AND b.start_time <= :now) ranked " +
+            "WHERE rn = 1";
+    private static final String STATS_SQL = "SELECT COUNT(*) AS all_count, " +
+            "COALESCE(SUM(CASE WHEN s.start_time < :now AND s.end_time > :now THEN 1 ELSE 0 END), 0) " +
+            "AS current_count, " +
+            "COALESCE(SUM(CASE WHEN s.end_time < :now THEN 1 ELSE 0 END), 0) AS past_count, " +
+            "COALESCE(SUM(CASE WHEN s.start_time > :now THEN 1 ELSE 0 END), 0) AS future_count, " +
+            "COALESCE(SUM(CASE WHEN s.status = 'WAITING' THEN 1 ELSE 0 END), 0) AS waiting_count, " +
+            "COALESCE(SUM(CASE WHEN s.status = 'REJECTED' THEN 1 ELSE 0 END), 0) AS rejected_count " +
+            "FROM (SELECT b.start_time, b.end_time, b.status FROM bookings b %s " +
+            "UNION ALL " +
+            "SELECT b.start_time, b.end_time, b.status FROM bookings_archive b %s) s";
+    private static final View<BookingDto> FULL = new View<>(BookingDto.class,
+            BookingDto::getStart, BookingDto::getId);
+    private static final View<BookingCompactDto> COMPACT = new View<>(BookingCompactDto.class,
+            BookingCompactDto::getStart, BookingCompactDto::getId);
+
+    @PersistenceContext
+    private EntityManager entityManager;
+    @Value("${shareit.booking.archive.age:P365D}")
+    private Duration archiveAge;
+
+    @Override
+    public List<BookingDto> findBookings(BookingRole role, Long userId, BookingState state, LocalDateTime now,
+                                         Pageable pageable) {
+        return findBookings(FULL, role, userId, state, now, pageable);
+    }
+
+    @Override
+    public List<BookingDto> findBookingsAfter(BookingRole role, Long userId, BookingState state, LocalDateTime now,
+                                              BookingCursor cursor, int limit) {
+        return findBookingsAfter(FULL, role, userId, state, now, cursor, limit);
+    }
+
+    @Override
+    public List<BookingCompactDto> findCompactBookings(BookingRole role, Long userId, BookingState state,
+                                                       LocalDateTime now, Pageable pageable) {
+        return findBookings(COMPACT, role, userId, state, now, pageable);
+    }
+
+    @Override
+    public List<BookingCompactDto> findCompactBookingsAfter(BookingRole role, Long userId, BookingState state,
+                                                            LocalDateTime now, BookingCursor cursor, int limit) {
+        return findBookingsAfter(COMPACT, role, userId, state, now, cursor, limit);
+    }
+
+    private <R> List<R> findBookings(View<R> view, BookingRole role, Long userId, BookingState state,
+                                     LocalDateTime now, Pageable pageable) {
+        if (pageable.isUnpaged()) {
+            List<R> bookings = createQuery(view, Booking.class, role, userId, state, now, null).getResultList();
+            if (mayBeArchived(state)) {
+                bookings = merge(view, bookings,
+                        createQuery(view, ArchivedBooking.class, role, userId, state, now, null).getResultList(),
+                        Integer.MAX_VALUE);
+            }
+            return bookings;
+        }
+        int offset = (int) pageable.getOffset();
+        int size = pageable.getPageSize();
+        List<R> bookings = createQuery(view, Booking.class, role, userId, state, now, null)
+                .setFirstResult(offset)
+                .setMaxResults(size)
+                .getResultList();
+        if (!reachesArchive(view, bookings, size, role, userId, state, now)) {
+            return bookings;
+        }
+        List<R> merged = merge(view,
+                createQuery(view, Booking.class, role, userId, state, now, null).setMaxResults(offset + size)
+                        .getResultList(),
+                createQuery(view, ArchivedBooking.class, role, userId, state, now, null).setMaxResults(offset + size)
+                        .getResultList(),
+                offset + size);
+        return merged.size() <= offset ? new ArrayList<>() : new ArrayList<>(merged.subList(offset, merged.size()));
+    }
+
+    private <R> List<R> findBookingsAfter(View<R> view, BookingRole role, Long userId, BookingState state,
+                                          LocalDateTime now, BookingCursor cursor, int limit) {
+        List<R> bookings = createQuery(view, Booking.class, role, userId, state, now, cursor)
+                .setMaxResults(limit)
+                .getResultList();
+        if (!reachesArchive(view, bookings, limit, role, userId, state, now)) {
+            return bookings;
+        }
+        return merge(view, bookings,
+                createQuery(view, ArchivedBooking.class, role, userId, state, now, cursor).setMaxResults(limit)
+                        .getResultList(),
+                limit);
+    }
+
+    /**
+     * Количество бронирований по всем состояниям одной строкой: SUM(CASE ...) по тем же
+     * условиям, что и у списков, вместо отдельного запроса на каждое состояние.
+     * Горячая таблица и архив отбираются по пользователю и склеиваются UNION ALL внутри того же запроса.
+     */
+    @Override
+    public BookingStatsDto countBookings(BookingRole role, Long userId, LocalDateTime now) {
+        String filter = role == BookingRole.OWNER
+                ? "JOIN items i ON i.item_id = b.item_id WHERE i.owner_id = :userId"
+                : "WHERE b.booker_id = :userId";
+        Tuple row = (Tuple) entityManager.createNativeQuery(String.format(STATS_SQL, filter, filter), Tuple.class)
+                .setParameter("userId", userId)
+                .setParameter("now", now)
+                .getSingleResult();
+        return new BookingStatsDto(
+                ((Number) row.get("all_count")).longValue(),
+                ((Number) row.get("current_count")).longValue(),
+                ((Number) row.get("past_count")).longValue(),
+                ((Number) row.get("future_count")).longValue(),
+                ((Number) row.get("waiting_count")).longValue(),
+                ((Number) row.get("rejected_count")).longValue());
+    }
+
+    /**
+     * Последнее и следующее подтвержденное бронирование для каждого предмета одним запросом:
+     * ROW_NUMBER() в окне по item_id отдельно для начавшихся и будущих бронирований.
+     * Для предметов без последнего бронирования тот же запрос выполняется по архиву.
+     */
+    @Override
+    public Map<Long, LastNextBookingDto> findLastAndNextBookings(Collection<Long> itemIds, LocalDateTime now) {
+        Map<Long, LastNextBookingDto> result = new HashMap<>();
+        if (itemIds.isEmpty()) {
+            return result;
+        }
+        collectLastAndNext(LAST_NEXT_SQL, itemIds, now, result);
+        List<Long> withoutLast = itemIds.stream()
+                .filter(itemId -> !result.containsKey(itemId) || result.get(itemId).getLastBooking() == null)
+                .collect(Collectors.toList());
+        if (!withoutLast.isEmpty()) {
+            collectLastAndNext(ARCHIVE_LAST_SQL, withoutLast, now, result);
+        }
+        return result;
+    }
+
+    private void collectLastAndNext(String sql, Collection<Long> itemIds, LocalDateTime now,
+                                    Map<Long, LastNextBookingDto> result) {
+        @SuppressWarnings("unchecked")
+        List<Tuple> rows = entityManager.createNativeQuery(sql, Tuple.class)
+                .setParameter("itemIds", itemIds)
+                .setParameter("now", now)
+                .getResultList();
+        for (Tuple row : rows) {
+            Long itemId = ((Number) row.get("item_id")).longValue();
+            BookingDtoItem booking = new BookingDtoItem(
+                    ((Number) row.get("booking_id")).longValue(),
+                    ((Number) row.get("booker_id")).longValue(),
+                    toLocalDateTime(row.get("start_time")),
+                    toLocalDateTime(row.get("end_time")));
+            LastNextBookingDto lastNext = result.computeIfAbsent(itemId,
+                    id -> new LastNextBookingDto(id, null, null));
+            if (((Number) row.get("is_last")).intValue() == 1) {
+                lastNext.setLastBooking(booking);
+            } else {
+                lastNext.setNextBooking(booking);
+            }
+        }
+    }
+
+    private static LocalDateTime toLocalDateTime(Object value) {
+        if (value instanceof Timestamp) {
+            return ((Timestamp) value).toLocalDateTime();
+        }
+        return (LocalDateTime) value;
+    }
+
+    /**
+     * В архиве только давно завершившиеся бронирования, поэтому CURRENT и FUTURE его не касаются.
+     */
+    private boolean mayBeArchived(BookingState state) {
+        return state != BookingState.CURRENT && state != BookingState.FUTURE;
+    }
+
+    /**
+     * Архив нужен, только если страница не заполнена горячими строками или дошла до начала
+     * самого позднего архивного бронирования пользователя: все горячие строки со start позже
+     * него идут в выдаче раньше любой архивной. Архивируются только бронирования старше archiveAge,
+     * поэтому страница, закончившаяся позже now - archiveAge, архив не трогает вовсе.
+     */
+    private <R> boolean reachesArchive(View<R> view, List<R> page, int size, BookingRole role, Long userId,
+                                       BookingState state, LocalDateTime now) {
+        if (!mayBeArchived(state)) {
+            return false;
+        }
+        if (page.size() == size && view.start(page.get(size - 1)).isAfter(now.minus(archiveAge))) {
+            return false;
+        }
+        LocalDateTime archiveLatestStart = findArchiveLatestStart(role, userId);
+        if (archiveLatestStart == null) {
+            return false;
+        }
+        return page.size() < size || !view.start(page.get(page.size() - 1)).isAfter(archiveLatestStart);
+    }
+
+    private LocalDateTime findArchiveLatestStart(BookingRole role, Long userId) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<LocalDateTime> query = cb.createQuery(LocalDateTime.class);
+        Root<ArchivedBooking> booking = query.from(ArchivedBooking.class);
+        query.select(cb.greatest(booking.<LocalDateTime>get("start")))
+                .where(rolePredicate(cb, booking, role, userId));
+        return entityManager.createQuery(query).getSingleResult();
+    }
+
+    private <R> List<R> merge(View<R> view, List<R> hot, List<R> archived, int limit) {
+        List<R> merged = new ArrayList<>(Math.min(limit, hot.size() + archived.size()));
+        int i = 0;
+        int j = 0;
+        while (merged.size() < limit && (i < hot.size() || j < archived.size())) {
+            if (j == archived.size() || i < hot.size() && view.order.compare(hot.get(i), archived.get(j)) <= 0) {
+                merged.add(hot.get(i++));
+            } else {
+                merged.add(archived.get(j++));
+            }
+        }
+        return merged;
+    }
+
+    private Predicate rolePredicate(CriteriaBuilder cb, Root<?> booking, BookingRole role, Long userId) {
+        if (role == BookingRole.OWNER) {
+            return cb.equal(booking.get("item").get("owner").get("id"), userId);
+        }
+        return cb.equal(booking.get("booker").get("id"), userId);
+    }
+
+    /**
+     * Полный вид соединяет владельца, букера и запрос предмета. Компактному хватает бронирования
+     * и названия предмета: владелец и букер сравниваются по внешним ключам без соединений.
+     */
+    private <R, T> TypedQuery<R> createQuery(View<R> view, Class<T> source, BookingRole role, Long userId,
+                                             BookingState state, LocalDateTime now, BookingCursor cursor) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<R> query = cb.createQuery(view.type);
+        Root<T> booking = query.from(source);
+        Join<T, Item> item = booking.join("item");
+
+        List<Predicate> predicates = new ArrayList<>();
+        if (role == BookingRole.OWNER) {
+            predicates.add(cb.equal(item.get("owner").get("id"), userId));
+        } else {
+            predicates.add(cb.equal(booking.get("booker").get("id"), userId));
+        }
+        predicates.addAll(statePredicates(cb, booking, state, now));
+        if (cursor != null) {
+            predicates.add(cb.or(
+                    cb.lessThan(booking.get("start"), cursor.getStart()),
+                    cb.and(
+                            cb.equal(booking.get("start"), cursor.getStart()),
+                            cb.lessThan(booking.get("id"), cursor.getId()))));
+        }
+
+        if (view == COMPACT) {
+            query.select(cb.construct(view.type,
+                    booking.get("id"), booking.get("start"), booking.get("end"), booking.get("status"),
+                    booking.get("booker").get("id"), item.get("id"), item.get("name")));
+        } else {
+            Join<Item, User> owner = item.join("owner");
+            Join<T, User> booker = booking.join("booker");
+            Join<Item, ItemRequest> request = item.join("request", JoinType.LEFT);
+            Join<ItemRequest, User> requester = request.join("requester", JoinType.LEFT);
+            query.select(cb.construct(view.type,
+                    booking.get("id"), booking.get("start"), booking.get("end"), booking.get("status"),
+                    booker.get("id"), booker.get("name"), booker.get("email"),
+                    item.get("id"), item.get("name"), item.get("description"), item.get("available"),
+                    owner.get("id"), owner.get("name"), owner.get("email"),
+                    request.get("id"), request.get("description"), request.get("created"),
+                    requester.get("id"), requester.get("name"), requester.get("email")));
+        }
+        query.where(predicates.toArray(new Predicate[0]))
+                .orderBy(cb.desc(booking.get("start")), cb.desc(booking.get("id")));
+        return entityManager.createQuery(query);
+    }
+
+    private List<Predicate> statePredicates(CriteriaBuilder cb, Root<?> booking,
+                                            BookingState state, LocalDateTime now) {
+        List<Predicate> predicates = new ArrayList<>();
+        switch (state) {
+            case CURRENT:
+                predicates.add(cb.lessThan(booking.get("start"), now));
+                predicates.add(cb.greaterThan(booking.get("end"), now));
+                break;
+            case PAST:
+                predicates.add(cb.lessThan(booking.get("end"), now));
+                break;
+            case FUTURE:
+                predicates.add(cb.greaterThan(booking.get("start"), now));
+                break;
+            case WAITING:
+                predicates.add(cb.equal(booking.get("status"), BookingStatus.WAITING));
+                break;
+            case REJECTED:
+                predicates.add(cb.equal(booking.get("status"), BookingStatus.REJECTED));
+                break;
+            default:
+                break;
+        }
+        return predicates;
+    }
+
+    /**
+     * Тип строки списка и порядок выдачи по (start, id) от поздних к ранним для слияния с архивом.
+     */
+    private static final class View<R> {
+        private final Class<R> type;
+        private final Function<R, LocalDateTime> start;
+        private final Comparator<R> order;
+
+        private View(Class<R> type, Function<R, LocalDateTime> start, Function<R, Long> id) {
+            this.type = type;
+            this.start = start;
+            this.order = Comparator.comparing(start).thenComparing(id).reversed();
+        }
+
+        private LocalDateTime start(R row) {
+            return start.apply(row);
+        }
+    }
+}
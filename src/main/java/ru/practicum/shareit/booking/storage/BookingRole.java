@@ -0,0 +1,6 @@
+package ru.practicum.shareit.booking.storage;
+
+public enum BookingRole {
+    BOOKER,
+    OWNER;
+}
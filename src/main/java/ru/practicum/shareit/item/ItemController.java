@@ -1,16 +1,33 @@
 package ru.practicum.shareit.item;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.AllArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.practicum.shareit.StatsAccess;
 import ru.practicum.shareit.item.dto.CommentDto;
 import ru.practicum.shareit.item.dto.CommentDtoRequest;
+import ru.practicum.shareit.item.dto.CommentPage;
 import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.dto.ItemPage;
+import ru.practicum.shareit.item.dto.ItemPeriodDto;
+import ru.practicum.shareit.item.dto.ItemSearchCacheStats;
 import ru.practicum.shareit.item.service.ItemService;
 
 import javax.validation.Valid;
+import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Pattern;
+import javax.validation.constraints.Positive;
+import javax.validation.constraints.PositiveOrZero;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @RestController
@@ -19,7 +36,13 @@ import java.util.List;
 @Validated
 public class ItemController {
     private final ItemService itemService;
+    private final ObjectMapper objectMapper;
+    private final StatsAccess statsAccess;
     public static final String USER_AUTH_HEADER = "X-Sharer-User-Id";
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    public static final String NDJSON = "application/x-ndjson";
+    public static final String INCLUDE_COMMENTS = "comments";
+    public static final int DEFAULT_PAGE_SIZE = 10;
 
     @PostMapping
     public ItemDto createItem(@RequestBody @Valid ItemDto itemDto,
@@ -37,6 +60,25 @@ public class ItemController {
         return itemService.addComment(itemId, userId, commentDtoRequest);
     }
 
+    /**
+     * Комментарии предмета от новых к старым.
+     */
+    @GetMapping("/{itemId}/comments")
+    public ResponseEntity<List<CommentDto>> getComments(@PathVariable Long itemId,
+                                                        @PositiveOrZero @RequestParam(defaultValue = "0") Integer from,
+                                                        @Positive @RequestParam(defaultValue = "10") Integer size,
+                                                        @RequestParam(required = false) String cursor) {
+        if (cursor == null && from > 0) {
+            return ResponseEntity.ok(itemService.getComments(itemId, from, size));
+        }
+        CommentPage page = itemService.getComments(itemId, cursor, size);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(page.getComments());
+    }
+
     @GetMapping("/{itemId}")
     public ItemDto getItemById(@NotNull(message = "Предмет не может быть пустым")
                                @Min(1)
@@ -45,11 +87,38 @@ public class ItemController {
         return itemService.getItemById(itemId, userId);
     }
 
+    /**
+     * Без from, size и cursor отдаются все предметы владельца, как раньше.
+     * С любым из них - страница размера size (по умолчанию DEFAULT_PAGE_SIZE).
+     */
     @GetMapping
-    public List<ItemDto> findAllItems(@NotNull(message = "Заголовок пользователя не может быть пустым")
-                                      @Min(1)
-                                      @RequestHeader(USER_AUTH_HEADER) Long userId) {
-        return itemService.getAllItems(userId);
+    public ResponseEntity<List<ItemDto>> findAllItems(@NotNull(message = "Заголовок пользователя не может быть пустым")
+                                                      @Min(1)
+                                                      @RequestHeader(USER_AUTH_HEADER) Long userId,
+                                                      @PositiveOrZero @RequestParam(required = false) Integer from,
+                                                      @Positive @RequestParam(required = false) Integer size,
+                                                      @RequestParam(required = false) String cursor,
+                                                      @Pattern(regexp = INCLUDE_COMMENTS)
+                                                      @RequestParam(required = false) String include,
+                                                      @Positive @RequestParam(required = false) Integer latestComments) {
+        boolean withComments = INCLUDE_COMMENTS.equals(include);
+        if (from == null && size == null && cursor == null) {
+            return ResponseEntity.ok(itemService.getAllItems(userId, withComments, latestComments));
+        }
+        int pageSize = size == null ? DEFAULT_PAGE_SIZE : size;
+        if (cursor == null && from != null && from > 0) {
+            return ResponseEntity.ok(itemService.getAllItems(userId, from, pageSize, withComments, latestComments));
+        }
+        return toResponse(itemService.getAllItems(userId, cursor, pageSize, withComments, latestComments));
+    }
+
+    @GetMapping("/{itemId}/availability")
+    public List<ItemPeriodDto> getAvailability(@PathVariable Long itemId,
+                                               @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+                                               LocalDateTime from,
+                                               @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+                                               LocalDateTime to) {
+        return itemService.getAvailability(itemId, from, to);
     }
 
     @PatchMapping("/{itemId}")
@@ -64,8 +133,68 @@ public class ItemController {
         return itemService.updateItem(itemDto, itemId, userId);
     }
 
+    /**
+     * Без from, size и cursor отдаются все найденные предметы, как раньше.
+     * С любым из них - страница размера size (по умолчанию DEFAULT_PAGE_SIZE).
+     */
     @GetMapping("/search")
-    public List<ItemDto> findItemsBySearch(@RequestParam String text) {
-        return itemService.getItemsBySearch(text);
+    public ResponseEntity<List<ItemDto>> findItemsBySearch(@RequestParam String text,
+                                                           @PositiveOrZero @RequestParam(required = false) Integer from,
+                                                           @Positive @RequestParam(required = false) Integer size,
+                                                           @RequestParam(required = false) String cursor,
+                                                           @Pattern(regexp = INCLUDE_COMMENTS)
+                                                           @RequestParam(required = false) String include,
+                                                           @Positive @RequestParam(required = false) Integer latestComments) {
+        boolean withComments = INCLUDE_COMMENTS.equals(include);
+        if (from == null && size == null && cursor == null) {
+            return ResponseEntity.ok(itemService.getItemsBySearch(text, withComments, latestComments));
+        }
+        int pageSize = size == null ? DEFAULT_PAGE_SIZE : size;
+        if (cursor == null && from != null && from > 0) {
+            return ResponseEntity.ok(itemService.getItemsBySearch(text, from, pageSize, withComments, latestComments));
+        }
+        return toResponse(itemService.getItemsBySearch(text, cursor, pageSize, withComments, latestComments));
+    }
+
+    /**
+     * Счетчики кэша страниц поиска, только для пользователей из shareit.stats.admin-ids.
+     */
+    @GetMapping("/search/stats")
+    public ItemSearchCacheStats getSearchCacheStats(@RequestHeader(USER_AUTH_HEADER) Long userId) {
+        statsAccess.check(userId);
+        return itemService.getSearchCacheStats();
+    }
+
+    /**
+     * Названия доступных предметов, начинающиеся с prefix, для подсказок при вводе.
+     */
+    @GetMapping("/suggest")
+    public List<String> suggestItemNames(@RequestParam String prefix,
+                                         @Positive @Max(100) @RequestParam(defaultValue = "10") Integer size) {
+        return itemService.suggestItemNames(prefix, size);
+    }
+
+    /**
+     * Все результаты поиска построчно в NDJSON, без сборки списка в памяти.
+     */
+    @GetMapping(path = "/search", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamItemsBySearch(@RequestParam String text) {
+        StreamingResponseBody body = out -> itemService.streamItemsBySearch(text, item -> {
+            try {
+                out.write(objectMapper.writeValueAsBytes(item));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON)).body(body);
+    }
+
+    private ResponseEntity<List<ItemDto>> toResponse(ItemPage page) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(page.getItems());
     }
 }
@@ -6,7 +6,7 @@ import ru.practicum.shareit.booking.dto.BookingDtoItem;
 import java.util.List;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @AllArgsConstructor
 @NoArgsConstructor
 public class ItemDto {
@@ -18,4 +18,19 @@ public class ItemDto {
     private BookingDtoItem nextBooking;
     private List<CommentDto> comments;
     private Long requestId;
+    private Integer commentCount;
+
+    public ItemDto(Long id, String name, String description, Boolean available, Long requestId) {
+        this.id = id;
+        this.name = name;
+        this.description = description;
+        this.available = available;
+        this.requestId = requestId;
+    }
+
+    public ItemDto(Long id, String name, String description, Boolean available, Long requestId,
+                   Integer commentCount) {
+        this(id, name, description, available, requestId);
+        this.commentCount = commentCount;
+    }
 }
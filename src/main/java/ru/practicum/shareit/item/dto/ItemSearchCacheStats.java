@@ -0,0 +1,20 @@
+package ru.practicum.shareit.item.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ItemSearchCacheStats {
+    private long hits;
+    private long misses;
+    private double hitRate;
+    private int entries;
+    private long invalidated;
+    private boolean indexLoaded;
+    private long indexLoadFailures;
+}
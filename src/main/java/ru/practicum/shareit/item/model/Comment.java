@@ -15,7 +15,8 @@ import java.time.LocalDateTime;
 public class Comment {
     @Id
     @Column(name = "comment_id")
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "comments_seq")
+    @SequenceGenerator(name = "comments_seq", sequenceName = "comments_seq", allocationSize = 100)
     private Long id;
 
     @Column(name = "text", nullable = false, length = 256)
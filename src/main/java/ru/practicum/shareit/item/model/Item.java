@@ -19,7 +19,8 @@ import java.util.Objects;
 public class Item {
     @Id
     @Column(name = "item_id")
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "items_seq")
+    @SequenceGenerator(name = "items_seq", sequenceName = "items_seq", allocationSize = 100)
     private Long id;
     @NotBlank
     @Column(name = "name", nullable = false)
@@ -35,6 +36,21 @@ public class Item {
     @ManyToOne
     @JoinColumn(name = "request_id")
     private ItemRequest request;
+    /**
+     * Число комментариев. Меняется только запросом ItemRepository.incrementCommentCount,
+     * поэтому сохранение предмета не затирает параллельное увеличение.
+     */
+    @Column(name = "comment_count", insertable = false, updatable = false)
+    private int commentCount;
+
+    public Item(Long id, String name, String description, Boolean available, User owner, ItemRequest request) {
+        this.id = id;
+        this.name = name;
+        this.description = description;
+        this.available = available;
+        this.owner = owner;
+        this.request = request;
+    }
 
     @Override
     public boolean equals(Object o) {
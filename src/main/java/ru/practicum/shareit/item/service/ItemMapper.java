@@ -27,6 +27,7 @@ public class ItemMapper {
         itemDto.setName(item.getName());
         itemDto.setDescription(item.getDescription());
         itemDto.setAvailable(item.getAvailable());
+        itemDto.setCommentCount(item.getCommentCount());
         itemDto.setLastBooking(BookingMapper.bookingInItemDto(lastBooking));
         itemDto.setNextBooking(BookingMapper.bookingInItemDto(nextBooking));
         if (item.getRequest() != null) {
@@ -44,6 +45,7 @@ public class ItemMapper {
         itemDto.setName(item.getName());
         itemDto.setDescription(item.getDescription());
         itemDto.setAvailable(item.getAvailable());
+        itemDto.setCommentCount(item.getCommentCount());
         if (item.getRequest() != null) {
             itemDto.setRequestId(item.getRequest().getId());
         }
@@ -0,0 +1,150 @@
+package ru.practicum.shareit.item.service;
+
+import lombok.Data;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.shareit.item.dto.ItemSearchCacheStats;
+import ru.practicum.shareit.item.dto.ItemTextDto;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Кэш страниц поиска по нормализованным словам запроса и позиции страницы.
+ * Запись сбрасывается после коммита создания или изменения предмета или нового отзыва к нему (в строках
+ * выдачи есть commentCount), только если предмет до или после изменения совпадает со всеми словами запроса,
+ * то есть мог появиться в выдаче, пропасть из нее или измениться в ней.
+ * Число записей ограничено, дольше всех не читавшиеся вытесняются.
+ */
+@Component
+public class ItemSearchCache {
+    private final Map<Key, Object> entries;
+    private final Map<String, Set<Key>> keysByToken = new HashMap<>();
+    private long hits;
+    private long misses;
+    private long invalidated;
+    private long invalidations;
+
+    public ItemSearchCache(@Value("${shareit.item.search-cache.max-entries:1000}") int maxEntries) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Object> eldest) {
+                if (size() > maxEntries) {
+                    unlink(eldest.getKey());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Страница из кэша или от loader. Страница, посчитанная во время сброса, в кэш не кладется.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String text, String page, int size, Supplier<T> loader) {
+        Key key = new Key(new ArrayList<>(new TreeSet<>(ItemSearchIndex.tokenize(text))), page, size);
+        long loadedAt;
+        synchronized (entries) {
+            Object value = entries.get(key);
+            if (value != null) {
+                hits++;
+                return (T) value;
+            }
+            misses++;
+            loadedAt = invalidations;
+        }
+        T value = loader.get();
+        synchronized (entries) {
+            if (loadedAt == invalidations && value != null) {
+                entries.put(key, value);
+                key.getTokens().forEach(token -> keysByToken.computeIfAbsent(token, t -> new HashSet<>()).add(key));
+            }
+        }
+        return value;
+    }
+
+    /**
+     * before и after - текст доступного предмета до и после изменения, null если предмета в поиске не было.
+     */
+    public void onSaved(ItemTextDto before, ItemTextDto after) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(before, after);
+                }
+            });
+        } else {
+            evict(before, after);
+        }
+    }
+
+    public ItemSearchCacheStats getStats() {
+        synchronized (entries) {
+            long requests = hits + misses;
+            return ItemSearchCacheStats.builder()
+                    .hits(hits)
+                    .misses(misses)
+                    .hitRate(requests == 0 ? 0 : (double) hits / requests)
+                    .entries(entries.size())
+                    .invalidated(invalidated)
+                    .build();
+        }
+    }
+
+    private void evict(ItemTextDto before, ItemTextDto after) {
+        Predicate<String> matchesBefore = matcher(before);
+        Predicate<String> matchesAfter = matcher(after);
+        synchronized (entries) {
+            invalidations++;
+            Set<Key> candidates = new HashSet<>();
+            keysByToken.forEach((token, keys) -> {
+                if (matchesBefore.test(token) || matchesAfter.test(token)) {
+                    candidates.addAll(keys);
+                }
+            });
+            for (Key key : candidates) {
+                if (key.getTokens().stream().allMatch(matchesBefore)
+                        || key.getTokens().stream().allMatch(matchesAfter)) {
+                    entries.remove(key);
+                    unlink(key);
+                    invalidated++;
+                }
+            }
+        }
+    }
+
+    private void unlink(Key key) {
+        for (String token : key.getTokens()) {
+            Set<Key> keys = keysByToken.get(token);
+            if (keys != null) {
+                keys.remove(key);
+                if (keys.isEmpty()) {
+                    keysByToken.remove(token);
+                }
+            }
+        }
+    }
+
+    private static Predicate<String> matcher(ItemTextDto item) {
+        return item == null ? token -> false : ItemSearchIndex.matcher(item.getName(), item.getDescription());
+    }
+
+    @Data
+    private static class Key {
+        private final List<String> tokens;
+        private final String page;
+        private final int size;
+    }
+}
@@ -0,0 +1,486 @@
+package ru.practicum.shareit.item.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.item.dto.ItemTextDto;
+import ru.practicum.shareit.item.storage.ItemRepository;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Инвертированный индекс доступных предметов по словам названия и описания.
+ * Загружается из items в фоне после старта приложения и дальше поддерживается при создании и изменении предметов.
+ * Неудачная загрузка повторяется с растущей паузой. Пока загрузка не закончена, поиск идет запросом
+ * к базе в порядке id, без ранжирования и опечаток, а подсказки пусты.
+ * Слово запроса совпадает с любым словом предмета, которое с него начинается (слово короче трех букв -
+ * только с таким же словом, иначе оно раскрывается почти во весь словарь), предмет должен
+ * содержать все слова запроса. Результаты упорядочены по BM25F: совпадения в названии весят больше,
+ * статистика терминов (число документов с термином, средние длины полей) обновляется вместе с индексом.
+ * Слова длиннее трех букв совпадают и с терминами на расстоянии Дамерау-Левенштейна 1 (от восьми букв - 2),
+ * такие совпадения ищутся по словарю TermTrie и весят меньше точных.
+ * Для подсказок по мере ввода отдельно хранятся нормализованные названия в TermTrie с числом
+ * доступных предметов под каждым названием.
+ */
+@Slf4j
+@Component
+public class ItemSearchIndex {
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final double NAME_WEIGHT = 2.0;
+    private static final double DESCRIPTION_WEIGHT = 1.0;
+    private static final double TYPO_PENALTY = 0.5;
+    private static final int MIN_PREFIX_LENGTH = 3;
+    private static final int LOAD_BATCH = 1000;
+    private static final Duration RETRY_DELAY = Duration.ofSeconds(1);
+    private static final Duration MAX_RETRY_DELAY = Duration.ofMinutes(1);
+    /**
+     * Порядок выдачи: по убыванию релевантности, при равенстве по id.
+     */
+    static final Comparator<Hit> ORDER = Comparator.comparingDouble(Hit::getScore).reversed()
+            .thenComparing(Hit::getId);
+
+    private final ItemRepository itemRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final NavigableMap<String, Set<Long>> postings = new TreeMap<>();
+    private final Map<Long, Document> documents = new HashMap<>();
+    private final TermTrie dictionary = new TermTrie();
+    private final TermTrie names = new TermTrie();
+    private final Map<String, String> displayNames = new HashMap<>();
+    private long totalNameLength;
+    private long totalDescriptionLength;
+    private final Set<Long> changedWhileLoading = new HashSet<>();
+    private volatile boolean loaded;
+    private boolean loading;
+    private final AtomicLong loadFailures = new AtomicLong();
+
+    public ItemSearchIndex(ItemRepository itemRepository, PlatformTransactionManager transactionManager) {
+        this.itemRepository = itemRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public long getLoadFailures() {
+        return loadFailures.get();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadInBackground() {
+        Thread loader = new Thread(this::loadWithRetries, "item-search-index-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * Пауза между попытками начинается с RETRY_DELAY и удваивается до MAX_RETRY_DELAY.
+     */
+    private void loadWithRetries() {
+        long delay = RETRY_DELAY.toMillis();
+        while (!tryLoad()) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            delay = Math.min(delay * 2, MAX_RETRY_DELAY.toMillis());
+        }
+    }
+
+    boolean tryLoad() {
+        try {
+            transactionTemplate.executeWithoutResult(status -> load());
+            return true;
+        } catch (RuntimeException e) {
+            log.error("Не удалось загрузить индекс поиска предметов (попытка {}), поиск остается на запросах к базе",
+                    loadFailures.incrementAndGet(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Не более limit лучших совпадений, идущих в порядке ORDER после after (null - с начала).
+     * Лучшие отбираются кучей размера limit, полный список совпадений не сортируется.
+     * У совпадений из базы релевантность 0, у совпадений индекса она всегда больше, поэтому
+     * курсор, выданный до загрузки, и дальше продолжается по базе в порядке id.
+     */
+    public List<Hit> search(String text, Hit after, int limit) {
+        Set<String> tokens = tokenize(text);
+        if (tokens.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        if (!loaded || (after != null && after.getScore() == 0)) {
+            return scan(tokens, after, limit);
+        }
+        lock.readLock().lock();
+        try {
+            Map<Long, Double> scores = null;
+            for (String token : tokens) {
+                Map<Long, Double> tokenScores = scoreToken(token);
+                if (scores == null) {
+                    scores = tokenScores;
+                } else {
+                    scores.keySet().retainAll(tokenScores.keySet());
+                    scores.replaceAll((id, score) -> score + tokenScores.get(id));
+                }
+                if (scores.isEmpty()) {
+                    return Collections.emptyList();
+                }
+            }
+            return top(scores, after, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Не более limit названий доступных предметов, начинающихся с prefix без учета регистра и знаков препинания.
+     * Сначала названия, под которыми больше доступных предметов, при равенстве по алфавиту.
+     */
+    public List<String> suggest(String prefix, int limit) {
+        String key = nameKey(prefix);
+        if (key.isEmpty() || limit <= 0 || !loaded) {
+            return Collections.emptyList();
+        }
+        lock.readLock().lock();
+        try {
+            return names.complete(key, limit).stream()
+                    .map(displayNames::get)
+                    .collect(Collectors.toList());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void onSaved(Long itemId, String name, String description, Boolean available) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(itemId, name, description, available);
+                }
+            });
+        } else {
+            apply(itemId, name, description, available);
+        }
+    }
+
+    /**
+     * До начала загрузки изменения пропускаются: загрузка прочитает их из базы.
+     * Во время загрузки изменение применяется сразу, а предмет запоминается, чтобы загрузка
+     * не перезаписала его строкой, прочитанной раньше коммита.
+     */
+    private void apply(Long itemId, String name, String description, Boolean available) {
+        lock.writeLock().lock();
+        try {
+            if (!loaded && !loading) {
+                return;
+            }
+            if (loading) {
+                changedWhileLoading.add(itemId);
+            }
+            remove(itemId);
+            if (Boolean.TRUE.equals(available)) {
+                add(itemId, name, description);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Читает доступные предметы потоком и добавляет их порциями по LOAD_BATCH, блокировка записи
+     * берется только на время порции. Поиск до конца загрузки индекс не читает.
+     * Если чтение оборвалось, загруженная часть сбрасывается, и следующая попытка начинает с пустого индекса.
+     */
+    void load() {
+        lock.writeLock().lock();
+        try {
+            if (loaded || loading) {
+                return;
+            }
+            loading = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        List<ItemTextDto> batch = new ArrayList<>(LOAD_BATCH);
+        try (Stream<ItemTextDto> items = itemRepository.streamAvailableTexts()) {
+            items.forEach(item -> {
+                batch.add(item);
+                if (batch.size() == LOAD_BATCH) {
+                    addLoaded(batch);
+                    batch.clear();
+                }
+            });
+            addLoaded(batch);
+        } catch (RuntimeException e) {
+            reset();
+            throw e;
+        }
+        lock.writeLock().lock();
+        try {
+            changedWhileLoading.clear();
+            loading = false;
+            loaded = true;
+            log.info("Индекс поиска предметов загружен: {} предметов", documents.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void reset() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            documents.clear();
+            dictionary.clear();
+            names.clear();
+            displayNames.clear();
+            totalNameLength = 0;
+            totalDescriptionLength = 0;
+            changedWhileLoading.clear();
+            loading = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void addLoaded(List<ItemTextDto> batch) {
+        lock.writeLock().lock();
+        try {
+            for (ItemTextDto item : batch) {
+                if (!changedWhileLoading.contains(item.getId())) {
+                    add(item.getId(), item.getName(), item.getDescription());
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Поиск до загрузки индекса: доступные предметы, содержащие самое длинное слово запроса, читаются
+     * потоком в порядке id, остальные слова проверяются тем же matcher, до limit совпадений.
+     */
+    private List<Hit> scan(Set<String> tokens, Hit after, int limit) {
+        String longest = tokens.stream().max(Comparator.comparingInt(String::length)).orElseThrow();
+        long afterId = after == null ? 0L : after.getId();
+        try (Stream<ItemTextDto> items = itemRepository.streamAvailableTextsLike("%" + longest + "%", afterId)) {
+            return items.filter(item -> tokens.stream().allMatch(matcher(item.getName(), item.getDescription())))
+                    .limit(limit)
+                    .map(item -> new Hit(item.getId(), 0))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Вклад слова запроса для каждого подходящего предмета. Если слово раскрывается в несколько
+     * терминов предмета (префикс, опечатка), берется лучший из них, чтобы короткий префикс
+     * не набирал очки числом форм. Слово короче MIN_PREFIX_LENGTH не раскрывается.
+     */
+    private Map<Long, Double> scoreToken(String token) {
+        Map<Long, Double> scores = new HashMap<>();
+        if (token.length() < MIN_PREFIX_LENGTH) {
+            Set<Long> ids = postings.get(token);
+            if (ids != null) {
+                scoreTerm(token, ids, 1.0, scores);
+            }
+            return scores;
+        }
+        for (Map.Entry<String, Set<Long>> entry
+                : postings.subMap(token, true, token + Character.MAX_VALUE, false).entrySet()) {
+            scoreTerm(entry.getKey(), entry.getValue(), 1.0, scores);
+        }
+        for (Map.Entry<String, Integer> typo : dictionary.fuzzy(token, maxDistance(token)).entrySet()) {
+            if (!typo.getKey().startsWith(token)) {
+                scoreTerm(typo.getKey(), postings.get(typo.getKey()), Math.pow(TYPO_PENALTY, typo.getValue()), scores);
+            }
+        }
+        return scores;
+    }
+
+    private void scoreTerm(String term, Set<Long> ids, double weight, Map<Long, Double> scores) {
+        double averageName = Math.max(1.0, (double) totalNameLength / documents.size());
+        double averageDescription = Math.max(1.0, (double) totalDescriptionLength / documents.size());
+        double idf = Math.log(1 + (documents.size() - ids.size() + 0.5) / (ids.size() + 0.5));
+        for (Long id : ids) {
+            Document document = documents.get(id);
+            double tf = NAME_WEIGHT * document.nameFrequency(term)
+                    / (1 - B + B * document.nameLength / averageName)
+                    + DESCRIPTION_WEIGHT * document.descriptionFrequency(term)
+                    / (1 - B + B * document.descriptionLength / averageDescription);
+            double score = weight * idf * tf * (K1 + 1) / (tf + K1);
+            scores.merge(id, score, Math::max);
+        }
+    }
+
+    private static int maxDistance(String token) {
+        if (token.length() < 4) {
+            return 0;
+        }
+        return token.length() < 8 ? 1 : 2;
+    }
+
+    private static List<Hit> top(Map<Long, Double> scores, Hit after, int limit) {
+        PriorityQueue<Hit> heap = new PriorityQueue<>(Math.min(limit, scores.size()) + 1, ORDER.reversed());
+        for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+            Hit hit = new Hit(entry.getKey(), entry.getValue());
+            if (after != null && ORDER.compare(hit, after) <= 0) {
+                continue;
+            }
+            if (heap.size() < limit) {
+                heap.add(hit);
+            } else if (ORDER.compare(hit, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(hit);
+            }
+        }
+        List<Hit> result = new ArrayList<>(heap);
+        result.sort(ORDER);
+        return result;
+    }
+
+    private void add(Long itemId, String name, String description) {
+        Document document = new Document(nameKey(name), terms(name), terms(description));
+        documents.put(itemId, document);
+        if (!document.nameKey.isEmpty()) {
+            names.add(document.nameKey);
+            displayNames.putIfAbsent(document.nameKey, WHITESPACE.matcher(name.trim()).replaceAll(" "));
+        }
+        totalNameLength += document.nameLength;
+        totalDescriptionLength += document.descriptionLength;
+        for (String term : document.terms()) {
+            postings.computeIfAbsent(term, key -> {
+                dictionary.add(key);
+                return new HashSet<>();
+            }).add(itemId);
+        }
+    }
+
+    private void remove(Long itemId) {
+        Document document = documents.remove(itemId);
+        if (document == null) {
+            return;
+        }
+        if (!document.nameKey.isEmpty() && names.remove(document.nameKey)) {
+            displayNames.remove(document.nameKey);
+        }
+        totalNameLength -= document.nameLength;
+        totalDescriptionLength -= document.descriptionLength;
+        for (String term : document.terms()) {
+            Set<Long> ids = postings.get(term);
+            ids.remove(itemId);
+            if (ids.isEmpty()) {
+                postings.remove(term);
+                dictionary.remove(term);
+            }
+        }
+    }
+
+    /**
+     * Проверка, совпало бы слово запроса с текстом предмета по тем же правилам, что и в search:
+     * по префиксу или с опечаткой.
+     */
+    static Predicate<String> matcher(String name, String description) {
+        Set<String> itemTerms = new HashSet<>(terms(name));
+        itemTerms.addAll(terms(description));
+        TermTrie trie = new TermTrie();
+        itemTerms.forEach(trie::add);
+        return token -> itemTerms.stream().anyMatch(term -> token.length() < MIN_PREFIX_LENGTH
+                ? term.equals(token) : term.startsWith(token))
+                || !trie.fuzzy(token, maxDistance(token)).isEmpty();
+    }
+
+    static Set<String> tokenize(String text) {
+        return new LinkedHashSet<>(terms(text));
+    }
+
+    private static String nameKey(String name) {
+        return String.join(" ", terms(name));
+    }
+
+    private static List<String> terms(String text) {
+        if (text == null) {
+            return Collections.emptyList();
+        }
+        String normalized = text.toLowerCase(Locale.ROOT).replace('ё', 'е');
+        return Arrays.stream(SEPARATORS.split(normalized))
+                .filter(token -> !token.isEmpty())
+                .collect(Collectors.toList());
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class Hit {
+        private Long id;
+        private double score;
+    }
+
+    /**
+     * Частоты терминов по полям и длины полей одного предмета.
+     */
+    private static final class Document {
+        private final String nameKey;
+        private final Map<String, Integer> nameFrequencies = new HashMap<>();
+        private final Map<String, Integer> descriptionFrequencies = new HashMap<>();
+        private final int nameLength;
+        private final int descriptionLength;
+
+        Document(String nameKey, List<String> nameTerms, List<String> descriptionTerms) {
+            this.nameKey = nameKey;
+            nameTerms.forEach(term -> nameFrequencies.merge(term, 1, Integer::sum));
+            descriptionTerms.forEach(term -> descriptionFrequencies.merge(term, 1, Integer::sum));
+            nameLength = nameTerms.size();
+            descriptionLength = descriptionTerms.size();
+        }
+
+        int nameFrequency(String term) {
+            return nameFrequencies.getOrDefault(term, 0);
+        }
+
+        int descriptionFrequency(String term) {
+            return descriptionFrequencies.getOrDefault(term, 0);
+        }
+
+        Set<String> terms() {
+            Set<String> terms = new HashSet<>(nameFrequencies.keySet());
+            terms.addAll(descriptionFrequencies.keySet());
+            return terms;
+        }
+    }
+}
@@ -2,9 +2,15 @@ package ru.practicum.shareit.item.service;
 
 import ru.practicum.shareit.item.dto.CommentDto;
 import ru.practicum.shareit.item.dto.CommentDtoRequest;
+import ru.practicum.shareit.item.dto.CommentPage;
 import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.dto.ItemPage;
+import ru.practicum.shareit.item.dto.ItemPeriodDto;
+import ru.practicum.shareit.item.dto.ItemSearchCacheStats;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface ItemService {
     ItemDto createItem(ItemDto itemDto, Long userId);
@@ -13,9 +19,29 @@ public interface ItemService {
 
     ItemDto getItemById(Long itemId, Long userId);
 
-    List<ItemDto> getAllItems(Long userId);
+    List<ItemDto> getAllItems(Long userId, boolean withComments, Integer latestComments);
 
-    List<ItemDto> getItemsBySearch(String text);
+    List<ItemDto> getAllItems(Long userId, int from, int size, boolean withComments, Integer latestComments);
+
+    ItemPage getAllItems(Long userId, String cursor, int size, boolean withComments, Integer latestComments);
+
+    List<ItemDto> getItemsBySearch(String text, boolean withComments, Integer latestComments);
+
+    List<ItemDto> getItemsBySearch(String text, int from, int size, boolean withComments, Integer latestComments);
+
+    ItemPage getItemsBySearch(String text, String cursor, int size, boolean withComments, Integer latestComments);
+
+    void streamItemsBySearch(String text, Consumer<ItemDto> consumer);
+
+    List<String> suggestItemNames(String prefix, int size);
+
+    ItemSearchCacheStats getSearchCacheStats();
+
+    List<ItemPeriodDto> getAvailability(Long itemId, LocalDateTime from, LocalDateTime to);
 
     CommentDto addComment(long itemId, long authorId, CommentDtoRequest commentDto);
+
+    List<CommentDto> getComments(Long itemId, int from, int size);
+
+    CommentPage getComments(Long itemId, String cursor, int size);
 }
@@ -2,24 +2,37 @@ package ru.practicum.shareit.item.service;
 
 import lombok.AllArgsConstructor;
 import org.springframework.dao.DataIntegrityViolationException;
-import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import ru.practicum.shareit.booking.dto.BookingDtoItem;
+import ru.practicum.shareit.OffsetPageRequest;
+import ru.practicum.shareit.booking.dto.LastNextBookingDto;
+import ru.practicum.shareit.booking.exceptions.UnavaibleDatePeriodException;
 import ru.practicum.shareit.booking.model.Booking;
-import ru.practicum.shareit.booking.service.BookingMapperShort;
+import ru.practicum.shareit.booking.service.ItemBookingCache;
+import ru.practicum.shareit.booking.storage.BookingArchiveRepository;
 import ru.practicum.shareit.booking.storage.BookingRepository;
 import ru.practicum.shareit.booking.storage.BookingStatus;
 import ru.practicum.shareit.item.dto.CommentDto;
 import ru.practicum.shareit.item.dto.CommentDtoRequest;
+import ru.practicum.shareit.item.dto.CommentPage;
 import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.dto.ItemPage;
+import ru.practicum.shareit.item.dto.ItemPeriodDto;
+import ru.practicum.shareit.item.dto.ItemSearchCacheStats;
+import ru.practicum.shareit.item.dto.ItemTextDto;
 import ru.practicum.shareit.item.exceptions.ItemAccessDeniedException;
 import ru.practicum.shareit.item.exceptions.ItemNotAvailibleException;
 import ru.practicum.shareit.item.exceptions.ItemNotFoundException;
 import ru.practicum.shareit.item.model.Comment;
 import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.storage.CommentCursor;
 import ru.practicum.shareit.item.storage.CommentRepository;
+import ru.practicum.shareit.item.storage.ItemCursor;
+import ru.practicum.shareit.item.storage.ItemDetails;
 import ru.practicum.shareit.item.storage.ItemRepository;
+import ru.practicum.shareit.item.storage.IdCursor;
 import ru.practicum.shareit.user.exceptions.EmailErrorException;
 import ru.practicum.shareit.user.exceptions.UserNotFoundException;
 import ru.practicum.shareit.user.model.User;
@@ -28,12 +41,18 @@ import ru.practicum.shareit.user.storage.UserRepository;
 
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @AllArgsConstructor
 @Transactional
 public class ItemServiceImpl implements ItemService {
+    private static final int STREAM_CHUNK = 500;
+    private static final int COMMENTS_PREVIEW = 10;
+
     private final ItemRepository itemRepository;
     private final UserRepository userRepository;
     private final UserService userService;
@@ -41,6 +60,10 @@ public class ItemServiceImpl implements ItemService {
     private final BookingRepository bookingRepository;
     private final CommentRepository commentRepository;
     private final CommentMapper commentMapper;
+    private final BookingArchiveRepository bookingArchiveRepository;
+    private final ItemBookingCache itemBookingCache;
+    private final ItemSearchIndex itemSearchIndex;
+    private final ItemSearchCache itemSearchCache;
 
     @Override
     public ItemDto createItem(ItemDto itemDto, Long userId) {
@@ -61,6 +84,8 @@ public class ItemServiceImpl implements ItemService {
 
         try {
             item = itemRepository.save(item);
+            itemSearchIndex.onSaved(item.getId(), item.getName(), item.getDescription(), item.getAvailable());
+            itemSearchCache.onSaved(null, searchable(item));
             return mapper.toDtoItem(item, null, null, null);
         } catch (DataIntegrityViolationException e) {
             throw new ItemNotAvailibleException("createItem: Не удалось сохранить данные в БД");
@@ -74,7 +99,8 @@ public class ItemServiceImpl implements ItemService {
                 () -> new UserNotFoundException("addComment: User not found " + authorId)
         );
         Optional<Booking> booking = bookingRepository.findFirstByBookerIdAndItemIdAndEndBefore(authorId, itemId, LocalDateTime.now());
-        if (booking.isEmpty()) {
+        if (booking.isEmpty()
+                && !bookingArchiveRepository.existsByBookerIdAndItemIdAndEndBefore(authorId, itemId, LocalDateTime.now())) {
             throw new EmailErrorException("addComment: Cannt find booking item " + itemId);
         }
         Item item = itemRepository.findById(itemId).orElseThrow(
@@ -84,6 +110,8 @@ public class ItemServiceImpl implements ItemService {
         Comment comment = commentMapper.toCommentModel(
                 commentDto, item, authorUser);
         comment = commentRepository.save(comment);
+        itemRepository.incrementCommentCount(itemId);
+        itemSearchCache.onSaved(searchable(item), searchable(item));
         return CommentMapper.toCommentDto(comment);
     }
 
@@ -93,6 +121,7 @@ public class ItemServiceImpl implements ItemService {
                 () -> new ItemNotFoundException("updateItem: Wrong itemId " + itemId)
         );
         checkOwnerId(item, userId);
+        ItemTextDto before = searchable(item);
         if (itemDto.getName() != null) {
             item.setName(itemDto.getName());
         }
@@ -102,8 +131,22 @@ public class ItemServiceImpl implements ItemService {
         if (itemDto.getAvailable() != null) {
             item.setAvailable(itemDto.getAvailable());
         }
-        List<Comment> comments = commentRepository.findByItemId(itemId);
-        return mapper.toDtoItem(itemRepository.save(item), null, null, comments);
+        item = itemRepository.save(item);
+        itemSearchIndex.onSaved(item.getId(), item.getName(), item.getDescription(), item.getAvailable());
+        itemSearchCache.onSaved(before, searchable(item));
+        ItemDto result = mapper.toDtoItem(item);
+        List<CommentDto> comments = new ArrayList<>(
+                commentRepository.findDtoByItemId(itemId, PageRequest.of(0, COMMENTS_PREVIEW)));
+        Collections.reverse(comments);
+        result.setComments(comments);
+        return result;
+    }
+
+    private static ItemTextDto searchable(Item item) {
+        if (!Boolean.TRUE.equals(item.getAvailable())) {
+            return null;
+        }
+        return new ItemTextDto(item.getId(), item.getName(), item.getDescription());
     }
 
     private void checkOwnerId(Item item, long ownerId) {
@@ -117,85 +160,317 @@ public class ItemServiceImpl implements ItemService {
 
     @Override
     public ItemDto getItemById(Long itemId, Long userId) {
-        Item item = itemRepository.findById(itemId).orElseThrow(() -> new ItemNotFoundException("Wrong id"));
-        User user = userService.getUserById(userId);
-        if (Objects.isNull(user)) {
+        ItemBookingCache.Lookup lookup = itemBookingCache.lookup(itemId, LocalDateTime.now());
+        ItemDetails details = itemRepository.findItemDetails(itemId, userId, COMMENTS_PREVIEW,
+                        lookup.getCached() == null ? lookup.getNow() : null)
+                .orElseThrow(() -> new ItemNotFoundException("Wrong id"));
+        if (!details.isViewerExists()) {
             throw new UserNotFoundException("User does not exist!");
         }
-        List<Comment> comments = commentRepository.findByItemId(itemId);
-        if (item.getOwner().getId().equals(userId)) {
-            LocalDateTime now = LocalDateTime.now();
-            Sort sortDesc = Sort.by("start").descending();
-            return getOwnerItemDto(item, now, sortDesc, comments);
-        } else {
-            return mapper.toDtoItem(item, null, null, comments);
+        ItemDto itemDto = mapper.toDtoItem(details.getItem());
+        if (details.getItem().getOwner().getId().equals(userId)) {
+            LastNextBookingDto bookings = lookup.getCached() != null ? lookup.getCached()
+                    : lookup.complete(details.getLastBooking(), details.getNextBooking());
+            itemDto.setLastBooking(bookings.getLastBooking());
+            itemDto.setNextBooking(bookings.getNextBooking());
         }
+        itemDto.setComments(details.getComments());
+        return itemDto;
     }
 
+    /**
+     * Все предметы владельца в порядке id одним запросом.
+     */
     @Override
-    public List<ItemDto> getAllItems(Long userId) {
-        User owner = userService.getUserById(userId);
+    @Transactional(readOnly = true)
+    public List<ItemDto> getAllItems(Long userId, boolean withComments, Integer latestComments) {
+        checkOwner(userId);
+        List<ItemDto> items = withLastNext(itemRepository.findDtoByOwnerId(userId, Pageable.unpaged()));
+        return withComments ? withComments(items, latestComments) : items;
+    }
 
-        if (Objects.isNull(owner)) {
+    @Override
+    @Transactional(readOnly = true)
+    public List<ItemDto> getAllItems(Long userId, int from, int size, boolean withComments, Integer latestComments) {
+        checkOwner(userId);
+        List<ItemDto> items = withLastNext(itemRepository.findDtoByOwnerId(userId, OffsetPageRequest.of(from, size)));
+        return withComments ? withComments(items, latestComments) : items;
+    }
+
+    /**
+     * Страница предметов владельца в порядке id после id из курсора.
+     * Сортировка и лимит выполняются в базе, последнее и следующее бронирование ищутся только для страницы.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public ItemPage getAllItems(Long userId, String cursor, int size, boolean withComments, Integer latestComments) {
+        checkOwner(userId);
+        Long afterId = cursor == null ? 0L : IdCursor.decode(cursor).getId();
+        List<ItemDto> items = itemRepository.findDtoByOwnerIdAndIdAfter(userId, afterId, PageRequest.of(0, size + 1));
+        String nextCursor = null;
+        if (items.size() > size) {
+            items = new ArrayList<>(items.subList(0, size));
+            nextCursor = new IdCursor(items.get(size - 1).getId()).encode();
+        }
+        items = withLastNext(items);
+        return new ItemPage(withComments ? withComments(items, latestComments) : items, nextCursor);
+    }
+
+    private void checkOwner(Long userId) {
+        if (Objects.isNull(userService.getUserById(userId))) {
             throw new UserNotFoundException("Owner not found");
         }
-        List<Item> ownerItems = itemRepository.findAllByOwner(owner);
+    }
 
-        List<ItemDto> result = ownerItems.stream()
-                .sorted(Comparator.comparing(Item::getId))
-                .map(mapper::toDtoItem)
+    /**
+     * Копии предметов страницы с комментариями, прочитанными одним запросом на всю страницу:
+     * все или latest последних на предмет. Страницы поиска лежат в кэше, поэтому сами предметы не меняются.
+     */
+    private List<ItemDto> withComments(List<ItemDto> items, Integer latest) {
+        if (items.isEmpty()) {
+            return items;
+        }
+        Map<Long, List<CommentDto>> comments = new HashMap<>();
+        commentRepository.findCommentsByItemIdIn(items.stream().map(ItemDto::getId).collect(Collectors.toList()), latest)
+                .forEach(comment -> comments.computeIfAbsent(comment.getItemId(), itemId -> new ArrayList<>())
+                        .add(new CommentDto(comment.getId(), comment.getText(), comment.getAuthorName(),
+                                comment.getCreated())));
+        return items.stream()
+                .map(itemDto -> itemDto.toBuilder()
+                        .comments(comments.getOrDefault(itemDto.getId(), new ArrayList<>()))
+                        .build())
                 .collect(Collectors.toList());
+    }
 
-        LocalDateTime now = LocalDateTime.now();
+    /**
+     * Копии строк закэшированной страницы поиска: вызывающий может менять ItemDto, не трогая кэш.
+     */
+    private static List<ItemDto> copies(List<ItemDto> items) {
+        return items.stream()
+                .map(itemDto -> itemDto.toBuilder().build())
+                .collect(Collectors.toList());
+    }
 
-        List<Booking> last = bookingRepository.findAllByItemInAndStartLessThanEqualAndStatusIsOrderByStartDesc(
-                ownerItems, now, BookingStatus.APPROVED);
-        List<Booking> next = bookingRepository.findAllByItemInAndStartAfterAndStatusIsOrderByStartAsc(
-                ownerItems, now, BookingStatus.APPROVED);
-        Map<Long, List<Booking>> itemIdToListLast = last.stream()
-                .collect(Collectors.groupingBy(booking -> booking.getItem().getId(), Collectors.toList()));
-        Map<Long, List<Booking>> itemIdToListNext = next.stream()
-                .collect(Collectors.groupingBy(booking -> booking.getItem().getId(), Collectors.toList()));
+    private List<ItemDto> withLastNext(List<ItemDto> items) {
+        if (items.isEmpty()) {
+            return items;
+        }
+        Map<Long, LastNextBookingDto> lastNext = itemBookingCache.getAll(
+                items.stream().map(ItemDto::getId).collect(Collectors.toList()), LocalDateTime.now());
+        items.forEach(itemDto -> {
+            LastNextBookingDto bookings = lastNext.get(itemDto.getId());
+            if (bookings != null) {
+                itemDto.setLastBooking(bookings.getLastBooking());
+                itemDto.setNextBooking(bookings.getNextBooking());
+            }
+        });
+        return items;
+    }
 
-        result.forEach(i -> i.setLastBooking(getBookingDtoShort(i.getId(), itemIdToListLast)));
-        result.forEach(i -> i.setNextBooking(getBookingDtoShort(i.getId(), itemIdToListNext)));
+    /**
+     * Все найденные предметы в порядке релевантности, собранные из streamItemsBySearch. Не кэшируются.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<ItemDto> getItemsBySearch(String text, boolean withComments, Integer latestComments) {
+        List<ItemDto> items = new ArrayList<>();
+        streamItemsBySearch(text, items::add);
+        return withComments ? withComments(items, latestComments) : items;
+    }
 
-        return result;
+    @Override
+    @Transactional(readOnly = true)
+    public List<ItemDto> getItemsBySearch(String text, int from, int size,
+                                          boolean withComments, Integer latestComments) {
+        if (isBlankQuery(text)) {
+            return new ArrayList<>();
+        }
+        List<ItemDto> items = cachedSearch(text, "from=" + from, size, () -> {
+            List<ItemSearchIndex.Hit> hits = itemSearchIndex.search(text, null, from + size);
+            if (hits.size() <= from) {
+                return new ArrayList<>();
+            }
+            return loadHits(hits.subList(from, hits.size()));
+        });
+        return withComments ? withComments(items, latestComments) : copies(items);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public ItemPage getItemsBySearch(String text, String cursor, int size,
+                                     boolean withComments, Integer latestComments) {
+        if (isBlankQuery(text)) {
+            return new ItemPage(new ArrayList<>(), null);
+        }
+        ItemSearchIndex.Hit after = toHit(cursor);
+        ItemPage page = cachedSearch(text, "cursor=" + cursor, size, () -> {
+            List<ItemSearchIndex.Hit> hits = itemSearchIndex.search(text, after, size + 1);
+            String nextCursor = null;
+            if (hits.size() > size) {
+                hits = hits.subList(0, size);
+                ItemSearchIndex.Hit last = hits.get(size - 1);
+                nextCursor = new ItemCursor(last.getScore(), last.getId()).encode();
+            }
+            return new ItemPage(loadHits(hits), nextCursor);
+        });
+        if (!withComments) {
+            return new ItemPage(copies(page.getItems()), page.getNextCursor());
+        }
+        return new ItemPage(withComments(page.getItems(), latestComments), page.getNextCursor());
+    }
+
+    /**
+     * Все найденные предметы порциями по STREAM_CHUNK в порядке релевантности: каждая порция
+     * берется из индекса после последнего отданного совпадения, строки читаются проекцией без сущностей,
+     * поэтому память не растет с числом результатов.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void streamItemsBySearch(String text, Consumer<ItemDto> consumer) {
+        if (isBlankQuery(text)) {
+            return;
+        }
+        ItemSearchIndex.Hit after = null;
+        List<ItemSearchIndex.Hit> hits;
+        do {
+            hits = itemSearchIndex.search(text, after, STREAM_CHUNK);
+            if (hits.isEmpty()) {
+                return;
+            }
+            loadHits(hits).forEach(consumer);
+            after = hits.get(hits.size() - 1);
+        } while (hits.size() == STREAM_CHUNK);
     }
 
-    private BookingDtoItem getBookingDtoShort(Long itemDtoEnhancedId, Map<Long, List<Booking>> itemIdToListBooking) {
-        Optional<BookingDtoItem> bookingDtoShort = Optional.empty();
-        if (itemIdToListBooking.containsKey(itemDtoEnhancedId)) {
-            bookingDtoShort = itemIdToListBooking.get(itemDtoEnhancedId).stream()
-                    .map(BookingMapperShort::bookingToBookingDtoShort).findFirst();
+    /**
+     * Подсказки названий отдаются из индекса без обращения к базе, она читается только при первой загрузке индекса.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<String> suggestItemNames(String prefix, int size) {
+        if (Objects.isNull(prefix) || prefix.isBlank()) {
+            return new ArrayList<>();
         }
-        return bookingDtoShort.orElse(null);
+        return itemSearchIndex.suggest(prefix, size);
     }
 
     @Override
-    public List<ItemDto> getItemsBySearch(String text) {
-        if (Objects.isNull(text) || text.isBlank() || text.length() <= 1) {
+    public ItemSearchCacheStats getSearchCacheStats() {
+        ItemSearchCacheStats stats = itemSearchCache.getStats();
+        stats.setIndexLoaded(itemSearchIndex.isLoaded());
+        stats.setIndexLoadFailures(itemSearchIndex.getLoadFailures());
+        return stats;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<CommentDto> getComments(Long itemId, int from, int size) {
+        checkItemExists(itemId);
+        return commentRepository.findDtoByItemId(itemId, OffsetPageRequest.of(from, size));
+    }
+
+    /**
+     * Комментарии предмета от новых к старым (по created, при равенстве по id),
+     * страница после комментария из курсора.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public CommentPage getComments(Long itemId, String cursor, int size) {
+        checkItemExists(itemId);
+        List<CommentDto> comments;
+        if (cursor == null) {
+            comments = commentRepository.findDtoByItemId(itemId, PageRequest.of(0, size + 1));
+        } else {
+            CommentCursor before = CommentCursor.decode(cursor);
+            comments = commentRepository.findDtoByItemIdBefore(itemId, before.getCreated(), before.getId(),
+                    PageRequest.of(0, size + 1));
+        }
+        String nextCursor = null;
+        if (comments.size() > size) {
+            comments = new ArrayList<>(comments.subList(0, size));
+            CommentDto last = comments.get(size - 1);
+            nextCursor = new CommentCursor(last.getCreated(), last.getId()).encode();
+        }
+        return new CommentPage(comments, nextCursor);
+    }
+
+    private void checkItemExists(Long itemId) {
+        if (!itemRepository.existsById(itemId)) {
+            throw new ItemNotFoundException("getComments: Item not found " + itemId);
+        }
+    }
+
+    private static ItemSearchIndex.Hit toHit(String cursor) {
+        if (cursor == null) {
+            return null;
+        }
+        ItemCursor itemCursor = ItemCursor.decode(cursor);
+        return new ItemSearchIndex.Hit(itemCursor.getId(), itemCursor.getScore());
+    }
+
+    /**
+     * Строки найденных предметов в порядке выдачи индекса.
+     */
+    private List<ItemDto> loadHits(List<ItemSearchIndex.Hit> hits) {
+        if (hits.isEmpty()) {
             return new ArrayList<>();
         }
-        return mapper.mapItemListToDto(itemRepository.search(text));
+        Map<Long, ItemDto> items = itemRepository.findAvailableDtoByIdIn(
+                        hits.stream().map(ItemSearchIndex.Hit::getId).collect(Collectors.toList())).stream()
+                .collect(Collectors.toMap(ItemDto::getId, itemDto -> itemDto));
+        return hits.stream()
+                .map(hit -> items.get(hit.getId()))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Страницы, найденные до загрузки индекса запросом к базе, не кэшируются: после загрузки
+     * та же страница ранжируется иначе.
+     */
+    private <T> T cachedSearch(String text, String page, int size, Supplier<T> loader) {
+        if (!itemSearchIndex.isLoaded()) {
+            return loader.get();
+        }
+        return itemSearchCache.get(text, page, size, loader);
     }
 
+    private static boolean isBlankQuery(String text) {
+        return Objects.isNull(text) || text.isBlank() || text.length() <= 1;
+    }
 
-    private ItemDto getOwnerItemDto(Item item, LocalDateTime now, Sort sort, List<Comment> comments) {
-        Optional<Booking> lastBooking = bookingRepository.findFirstByItemIdAndStatusAndStartBeforeOrderByStartDesc(
-                item.getId(),
-                BookingStatus.APPROVED,
-                LocalDateTime.now()
-        );
-        Optional<Booking> nextBooking = bookingRepository.findFirstByItemIdAndStatusAndStartAfterOrderByStart(
-                item.getId(),
-                BookingStatus.APPROVED,
-                LocalDateTime.now());
-
-        return ItemMapper.toDtoItem(item,
-                (lastBooking.isEmpty() ? null : lastBooking.get()),
-                (nextBooking.isEmpty() ? null : nextBooking.get()),
-                comments);
+    /**
+     * Свободные промежутки предмета в окне [from, to).
+     * Подтвержденные бронирования читаются потоком в порядке начала, промежутки
+     * собираются за один проход без загрузки бронирований в список.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<ItemPeriodDto> getAvailability(Long itemId, LocalDateTime from, LocalDateTime to) {
+        if (from == null || to == null || !from.isBefore(to)) {
+            throw new UnavaibleDatePeriodException("getAvailability: Некорректный период " + from + " - " + to);
+        }
+        if (!itemRepository.existsById(itemId)) {
+            throw new ItemNotFoundException("getAvailability: Item not found " + itemId);
+        }
+        List<ItemPeriodDto> free = new ArrayList<>();
+        LocalDateTime freeFrom = from;
+        try (Stream<ItemPeriodDto> busy = bookingRepository.streamBusyPeriods(itemId, from, to)) {
+            Iterator<ItemPeriodDto> iterator = busy.iterator();
+            while (iterator.hasNext() && freeFrom.isBefore(to)) {
+                ItemPeriodDto period = iterator.next();
+                if (period.getStart().isAfter(freeFrom)) {
+                    free.add(new ItemPeriodDto(freeFrom, period.getStart()));
+                }
+                if (period.getEnd().isAfter(freeFrom)) {
+                    freeFrom = period.getEnd();
+                }
+            }
+        }
+        if (freeFrom.isBefore(to)) {
+            free.add(new ItemPeriodDto(freeFrom, to));
+        }
+        return free;
     }
 
 }
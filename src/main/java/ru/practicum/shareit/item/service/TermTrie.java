@@ -0,0 +1,294 @@
+package ru.practicum.shareit.item.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Словарь терминов поискового индекса в виде префиксного дерева.
+ * Нечеткий поиск идет по дереву, считая на каждый узел строку матрицы расстояния Дамерау-Левенштейна
+ * (перестановка соседних букв - одна правка), и не спускается в ветки, где минимум строки уже больше
+ * допустимого расстояния, поэтому просматривается только малая часть словаря.
+ * Термин можно добавить несколько раз, число добавлений используется как популярность при дополнении префикса.
+ * Не потокобезопасен, доступ защищает блокировка ItemSearchIndex.
+ */
+final class TermTrie {
+    private Node root = new Node();
+    private int size;
+
+    void add(String term) {
+        Node[] path = new Node[term.length() + 1];
+        path[0] = root;
+        for (int i = 0; i < term.length(); i++) {
+            path[i + 1] = path[i].childOrCreate(term.charAt(i));
+        }
+        Node node = path[term.length()];
+        node.count++;
+        if (node.count == 1) {
+            size++;
+        }
+        for (Node onPath : path) {
+            onPath.best = Math.max(onPath.best, node.count);
+        }
+    }
+
+    /**
+     * Снимает одно добавление термина. Возвращает true, если термин удален из словаря полностью.
+     */
+    boolean remove(String term) {
+        int before = size;
+        remove(root, term, 0);
+        return size < before;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        root = new Node();
+        size = 0;
+    }
+
+    /**
+     * До limit терминов, начинающихся с prefix, по убыванию числа добавлений, при равенстве по алфавиту.
+     * Обход идет от лучших веток: в узле хранится наибольшее число добавлений в его поддереве,
+     * поэтому просматриваются только ветки, из которых еще может прийти ответ.
+     */
+    List<String> complete(String prefix, int limit) {
+        List<String> result = new ArrayList<>();
+        Node node = root;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            int index = node.indexOf(prefix.charAt(i));
+            node = index < 0 ? null : node.children[index];
+        }
+        if (node == null || limit <= 0) {
+            return result;
+        }
+        PriorityQueue<Completion> queue = new PriorityQueue<>(Completion.ORDER);
+        queue.add(new Completion(node, prefix, node.best, false));
+        while (!queue.isEmpty() && result.size() < limit) {
+            Completion completion = queue.poll();
+            if (completion.term) {
+                result.add(completion.text);
+                continue;
+            }
+            Node current = completion.node;
+            if (current.count > 0) {
+                queue.add(new Completion(current, completion.text, current.count, true));
+            }
+            for (int i = 0; i < current.size; i++) {
+                Node child = current.children[i];
+                queue.add(new Completion(child, completion.text + current.keys[i], child.best, false));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Термины на расстоянии от 1 до maxDistance от word, с расстоянием.
+     * Расстояние 1 ищется по всему словарю, больше 1 - только среди терминов с той же первой буквой:
+     * иначе под подозрение попадают почти все короткие префиксы словаря.
+     */
+    Map<String, Integer> fuzzy(String word, int maxDistance) {
+        Map<String, Integer> result = new HashMap<>();
+        if (maxDistance <= 0 || word.isEmpty()) {
+            return result;
+        }
+        int first = root.indexOf(word.charAt(0));
+        if (maxDistance == 1 || first < 0) {
+            new FuzzySearch(word, 1, result).run(root, 0, root.size);
+            return result;
+        }
+        FuzzySearch nearby = new FuzzySearch(word, 1, result);
+        nearby.run(root, 0, first);
+        nearby.run(root, first + 1, root.size);
+        new FuzzySearch(word, maxDistance, result).run(root, first, first + 1);
+        return result;
+    }
+
+    private void remove(Node node, String term, int depth) {
+        if (depth == term.length()) {
+            if (node.count > 0) {
+                node.count--;
+                if (node.count == 0) {
+                    size--;
+                }
+            }
+        } else {
+            int index = node.indexOf(term.charAt(depth));
+            if (index < 0) {
+                return;
+            }
+            Node child = node.children[index];
+            remove(child, term, depth + 1);
+            if (child.count == 0 && child.size == 0) {
+                node.removeAt(index);
+            }
+        }
+        node.best = node.count;
+        for (int i = 0; i < node.size; i++) {
+            node.best = Math.max(node.best, node.children[i].best);
+        }
+    }
+
+    /**
+     * Обход дерева для одного слова. Строки матрицы переиспользуются по глубине, а считаются только
+     * клетки полосы |i - j| <= maxDistance: остальные заведомо больше допустимого и хранятся как maxDistance + 1.
+     */
+    private static final class FuzzySearch {
+        private final String word;
+        private final int maxDistance;
+        private final Map<String, Integer> result;
+        private final StringBuilder prefix = new StringBuilder();
+        private int[][] rows = new int[0][];
+
+        FuzzySearch(String word, int maxDistance, Map<String, Integer> result) {
+            this.word = word;
+            this.maxDistance = maxDistance;
+            this.result = result;
+        }
+
+        /**
+         * Обходит ветки корня с индексами от from включительно до to не включительно.
+         */
+        void run(Node root, int from, int to) {
+            int[] firstRow = row(0);
+            for (int column = 0; column <= word.length(); column++) {
+                firstRow[column] = Math.min(column, maxDistance + 1);
+            }
+            for (int i = from; i < to; i++) {
+                visit(root.children[i], root.keys[i], 1);
+            }
+        }
+
+        private void visitChildren(Node node, int depth) {
+            for (int i = 0; i < node.size; i++) {
+                visit(node.children[i], node.keys[i], depth);
+            }
+        }
+
+        private void visit(Node node, char letter, int depth) {
+            int limit = maxDistance + 1;
+            int[] previousRow = rows[depth - 1];
+            int[] beforePreviousRow = depth > 1 ? rows[depth - 2] : null;
+            char previousLetter = depth > 1 ? prefix.charAt(depth - 2) : 0;
+            int[] currentRow = row(depth);
+            int from = Math.max(1, depth - maxDistance);
+            int to = Math.min(word.length(), depth + maxDistance);
+            currentRow[0] = Math.min(depth, limit);
+            if (from > 1) {
+                currentRow[from - 1] = limit;
+            }
+            int rowMinimum = currentRow[0];
+            for (int column = from; column <= to; column++) {
+                int value = Math.min(currentRow[column - 1], previousRow[column]) + 1;
+                value = Math.min(value, previousRow[column - 1] + (word.charAt(column - 1) == letter ? 0 : 1));
+                if (beforePreviousRow != null && column > 1 && word.charAt(column - 2) == letter
+                        && word.charAt(column - 1) == previousLetter) {
+                    value = Math.min(value, beforePreviousRow[column - 2] + 1);
+                }
+                currentRow[column] = Math.min(value, limit);
+                rowMinimum = Math.min(rowMinimum, currentRow[column]);
+            }
+            if (to < word.length()) {
+                currentRow[to + 1] = limit;
+            }
+            if (rowMinimum > maxDistance) {
+                return;
+            }
+            prefix.append(letter);
+            int distance = to == word.length() ? currentRow[to] : limit;
+            if (node.count > 0 && distance > 0 && distance <= maxDistance) {
+                result.put(prefix.toString(), distance);
+            }
+            visitChildren(node, depth + 1);
+            prefix.setLength(prefix.length() - 1);
+        }
+
+        private int[] row(int depth) {
+            if (depth >= rows.length) {
+                rows = Arrays.copyOf(rows, Math.max(depth + 1, rows.length * 2));
+            }
+            if (rows[depth] == null) {
+                int[] row = new int[word.length() + 1];
+                Arrays.fill(row, maxDistance + 1);
+                rows[depth] = row;
+            }
+            return rows[depth];
+        }
+    }
+
+    /**
+     * Элемент очереди дополнения: ветка с оценкой best ее поддерева или готовый термин с числом добавлений.
+     * При равной оценке ветка идет в порядке своего префикса, который не больше любого термина в ней.
+     */
+    private static final class Completion {
+        static final Comparator<Completion> ORDER = Comparator.comparingInt((Completion completion) -> completion.priority)
+                .reversed()
+                .thenComparing(completion -> completion.text)
+                .thenComparing(completion -> !completion.term);
+
+        private final Node node;
+        private final String text;
+        private final int priority;
+        private final boolean term;
+
+        Completion(Node node, String text, int priority, boolean term) {
+            this.node = node;
+            this.text = text;
+            this.priority = priority;
+            this.term = term;
+        }
+    }
+
+    /**
+     * Узел с отсортированными массивами ключей и детей вместо карты: дерево на миллионы терминов
+     * занимает заметно меньше памяти.
+     */
+    private static final class Node {
+        private static final char[] NO_KEYS = new char[0];
+        private static final Node[] NO_CHILDREN = new Node[0];
+
+        private char[] keys = NO_KEYS;
+        private Node[] children = NO_CHILDREN;
+        private int size;
+        private int count;
+        private int best;
+
+        int indexOf(char key) {
+            return Arrays.binarySearch(keys, 0, size, key);
+        }
+
+        Node childOrCreate(char key) {
+            int index = indexOf(key);
+            if (index >= 0) {
+                return children[index];
+            }
+            int position = -index - 1;
+            if (size == keys.length) {
+                int capacity = Math.max(2, size * 2);
+                keys = Arrays.copyOf(keys, capacity);
+                children = Arrays.copyOf(children, capacity);
+            }
+            System.arraycopy(keys, position, keys, position + 1, size - position);
+            System.arraycopy(children, position, children, position + 1, size - position);
+            Node child = new Node();
+            keys[position] = key;
+            children[position] = child;
+            size++;
+            return child;
+        }
+
+        void removeAt(int index) {
+            System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+            System.arraycopy(children, index + 1, children, index, size - index - 1);
+            size--;
+            children[size] = null;
+        }
+    }
+}
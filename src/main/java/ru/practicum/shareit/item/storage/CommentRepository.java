@@ -1,14 +1,28 @@
 package ru.practicum.shareit.item.storage;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.shareit.item.dto.CommentDto;
 import ru.practicum.shareit.item.model.Comment;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Transactional
 @Repository
-public interface CommentRepository extends JpaRepository<Comment, Long> {
-    List<Comment> findByItemId(Long itemId);
+public interface CommentRepository extends JpaRepository<Comment, Long>, CommentRepositoryCustom {
+    @Query("select new ru.practicum.shareit.item.dto.CommentDto(c.id, c.text, a.name, c.created) " +
+            "from comments c join c.author a " +
+            "where c.item.id = ?1 " +
+            "order by c.created desc, c.id desc")
+    List<CommentDto> findDtoByItemId(Long itemId, Pageable pageable);
+
+    @Query("select new ru.practicum.shareit.item.dto.CommentDto(c.id, c.text, a.name, c.created) " +
+            "from comments c join c.author a " +
+            "where c.item.id = ?1 and (c.created < ?2 or (c.created = ?2 and c.id < ?3)) " +
+            "order by c.created desc, c.id desc")
+    List<CommentDto> findDtoByItemIdBefore(Long itemId, LocalDateTime created, Long beforeId, Pageable pageable);
 }
@@ -0,0 +1,10 @@
+package ru.practicum.shareit.item.storage;
+
+import ru.practicum.shareit.item.dto.ItemCommentDto;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface CommentRepositoryCustom {
+    List<ItemCommentDto> findCommentsByItemIdIn(Collection<Long> itemIds, Integer latest);
+}
@@ -0,0 +1,53 @@
+package ru.practicum.shareit.item.storage;
+
+import ru.practicum.shareit.item.dto.ItemCommentDto;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Комментарии сразу для страницы предметов одним запросом, имя автора берется соединением с users.
+ * Если задан latest, для каждого предмета остаются только latest последних: номер комментария внутри
+ * предмета считает row_number() в базе, лишние строки не передаются.
+ * Комментарии предмета идут в порядке создания: по created, при равенстве по id. По одному id порядок
+ * не определить, значения последовательности выдаются блоками и не растут вместе со временем.
+ */
+public class CommentRepositoryImpl implements CommentRepositoryCustom {
+    private static final String ALL_JPQL = "select new ru.practicum.shareit.item.dto.ItemCommentDto(" +
+            "c.item.id, c.id, c.text, a.name, c.created) " +
+            "from comments c join c.author a " +
+            "where c.item.id in :itemIds " +
+            "order by c.item.id, c.created, c.id";
+    private static final String LATEST_SQL = "SELECT c.item_id, c.comment_id, c.text, u.name, c.created " +
+            "FROM (SELECT comment_id, item_id, text, author_id, created, " +
+            "ROW_NUMBER() OVER (PARTITION BY item_id ORDER BY created DESC, comment_id DESC) AS recency " +
+            "FROM comments WHERE item_id IN (:itemIds)) c " +
+            "JOIN users u ON u.user_id = c.author_id " +
+            "WHERE c.recency <= :latest " +
+            "ORDER BY c.item_id, c.created, c.comment_id";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<ItemCommentDto> findCommentsByItemIdIn(Collection<Long> itemIds, Integer latest) {
+        if (latest == null) {
+            return entityManager.createQuery(ALL_JPQL, ItemCommentDto.class)
+                    .setParameter("itemIds", itemIds)
+                    .getResultList();
+        }
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = entityManager.createNativeQuery(LATEST_SQL)
+                .setParameter("itemIds", itemIds)
+                .setParameter("latest", latest)
+                .getResultList();
+        return rows.stream()
+                .map(row -> new ItemCommentDto(((Number) row[0]).longValue(), ((Number) row[1]).longValue(),
+                        (String) row[2], (String) row[3], ((Timestamp) row[4]).toLocalDateTime()))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,22 @@
+package ru.practicum.shareit.item.storage;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import ru.practicum.shareit.booking.dto.BookingDtoItem;
+import ru.practicum.shareit.item.dto.CommentDto;
+import ru.practicum.shareit.item.model.Item;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ItemDetails {
+    private Item item;
+    private boolean viewerExists;
+    private List<CommentDto> comments = new ArrayList<>();
+    private BookingDtoItem lastBooking;
+    private BookingDtoItem nextBooking;
+}
@@ -1,27 +1,85 @@
 package ru.practicum.shareit.item.storage;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.dto.ItemTextDto;
 import ru.practicum.shareit.item.model.Item;
 import ru.practicum.shareit.request.model.ItemRequest;
-import ru.practicum.shareit.user.model.User;
 
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 @Transactional
 @Repository
-public interface ItemRepository extends JpaRepository<Item, Long> {
-    @Query(" select i from items i " +
-            "where upper(i.name) like upper(concat('%', ?1, '%')) " +
-            " or upper(i.description) like upper(concat('%', ?1, '%')) and i.available = true")
-    List<Item> search(String text);
+public interface ItemRepository extends JpaRepository<Item, Long>, ItemRepositoryCustom {
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1024"))
+    @Query("select new ru.practicum.shareit.item.dto.ItemTextDto(i.id, i.name, i.description) " +
+            "from items i " +
+            "where i.available = true")
+    Stream<ItemTextDto> streamAvailableTexts();
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1024"))
+    @Query("select new ru.practicum.shareit.item.dto.ItemTextDto(i.id, i.name, i.description) " +
+            "from items i " +
+            "where i.available = true and i.id > ?2 " +
+            "and (function('replace', lower(i.name), 'ё', 'е') like ?1 " +
+            "or function('replace', lower(i.description), 'ё', 'е') like ?1) " +
+            "order by i.id")
+    Stream<ItemTextDto> streamAvailableTextsLike(String pattern, Long afterId);
+
+    @Query("select new ru.practicum.shareit.item.dto.ItemDto(" +
+            "i.id, i.name, i.description, i.available, r.id, i.commentCount) " +
+            "from items i left join i.request r " +
+            "where i.id in ?1 and i.available = true " +
+            "order by i.id")
+    List<ItemDto> findAvailableDtoByIdIn(Collection<Long> itemIds);
+
+    @Query("select new ru.practicum.shareit.item.dto.ItemDto(" +
+            "i.id, i.name, i.description, i.available, r.id, i.commentCount) " +
+            "from items i left join i.request r " +
+            "where i.owner.id = ?1 " +
+            "order by i.id")
+    List<ItemDto> findDtoByOwnerId(Long ownerId, Pageable pageable);
 
-    List<Item> findAllByOwner(User owner);
+    @Query("select new ru.practicum.shareit.item.dto.ItemDto(" +
+            "i.id, i.name, i.description, i.available, r.id, i.commentCount) " +
+            "from items i left join i.request r " +
+            "where i.owner.id = ?1 and i.id > ?2 " +
+            "order by i.id")
+    List<ItemDto> findDtoByOwnerIdAndIdAfter(Long ownerId, Long afterId, Pageable pageable);
 
     boolean existsItemByIdAndAvailableIsTrue(long itemId);
 
+    @Modifying
+    @Query("update items i set i.commentCount = i.commentCount + 1 where i.id = ?1")
+    void incrementCommentCount(Long itemId);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<Item> findForUpdateById(Long itemId);
+
+    @Query(value = "SELECT item_id FROM items WHERE item_id IN (?1) ORDER BY item_id FOR UPDATE", nativeQuery = true)
+    List<Long> lockAllByIdIn(Collection<Long> itemIds);
+
+    @Query("select i from items i " +
+            "join fetch i.owner " +
+            "left join fetch i.request r " +
+            "left join fetch r.requester " +
+            "where i.id in ?1")
+    List<Item> findAllWithOwnerByIdIn(Collection<Long> itemIds);
+
     List<Item> findAllByRequestIn(List<ItemRequest> itemRequests);
 
     List<Item> findAllByRequest(ItemRequest itemRequest);
@@ -0,0 +1,12 @@
+package ru.practicum.shareit.item.storage;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+public interface ItemRepositoryCustom {
+    /**
+     * bookingsAt - момент, на который читаются последнее и следующее бронирование владельцу,
+     * null - не читать их (они уже есть в кэше).
+     */
+    Optional<ItemDetails> findItemDetails(Long itemId, Long viewerId, int latestComments, LocalDateTime bookingsAt);
+}
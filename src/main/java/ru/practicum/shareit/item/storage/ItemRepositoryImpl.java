@@ -0,0 +1,118 @@
+package ru.practicum.shareit.item.storage;
+
+import ru.practicum.shareit.booking.dto.BookingDtoItem;
+import ru.practicum.shareit.item.dto.CommentDto;
+import ru.practicum.shareit.item.model.Item;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Tuple;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Карточка предмета за два запроса: предмет со связями и проверкой пользователя,
+ * затем одним UNION ALL latestComments последних комментариев с авторами и, если владельцу нужны
+ * бронирования, которых нет в ItemBookingCache, последнее и следующее бронирование.
+ * Последнее ищется и в bookings, и в bookings_archive, из двух берется более позднее.
+ * Остальные комментарии читаются постранично, их число хранится в items.comment_count.
+ */
+public class ItemRepositoryImpl implements ItemRepositoryCustom {
+    private static final String ITEM_JPQL = "select i, (select count(u.id) from users u where u.id = :viewerId) " +
+            "from items i " +
+            "join fetch i.owner " +
+            "left join fetch i.request r " +
+            "left join fetch r.requester " +
+            "where i.id = :itemId";
+    private static final String CHILDREN_SQL =
+            "SELECT 'COMMENT' AS kind, c.comment_id AS id, u.user_id AS user_id, u.name AS user_name, " +
+                    "c.created AS time1, CAST(NULL AS TIMESTAMP) AS time2, c.text AS text " +
+                    "FROM (SELECT comment_id, author_id, created, text FROM comments WHERE item_id = :itemId " +
+                    "ORDER BY created DESC, comment_id DESC LIMIT :latest) c " +
+                    "JOIN users u ON u.user_id = c.author_id " +
+                    "UNION ALL " +
+                    "SELECT CASE WHEN b.is_last = 1 THEN 'LAST' ELSE 'NEXT' END, b.booking_id, b.booker_id, NULL, " +
+                    "b.start_time, b.end_time, NULL " +
+                    "FROM (SELECT booking_id, booker_id, start_time, end_time, " +
+                    "CASE WHEN start_time <= :now THEN 1 ELSE 0 END AS is_last, " +
+                    "ROW_NUMBER() OVER (PARTITION BY CASE WHEN start_time <= :now THEN 1 ELSE 0 END " +
+                    "ORDER BY CASE WHEN start_time <= :now THEN start_time END DESC, " +
+                    "CASE WHEN start_time > :now THEN start_time END ASC) AS rn " +
+                    "FROM bookings " +
+                    "WHERE :withBookings = TRUE AND item_id = :itemId AND status = 'APPROVED') b " +
+                    "WHERE b.rn = 1 " +
+                    "UNION ALL " +
+                    "SELECT 'LAST', a.booking_id, a.booker_id, NULL, a.start_time, a.end_time, NULL " +
+                    "FROM (SELECT booking_id, booker_id, start_time, end_time, " +
+                    "ROW_NUMBER() OVER (ORDER BY start_time DESC) AS rn " +
+                    "FROM bookings_archive " +
+                    "WHERE :withBookings = TRUE AND item_id = :itemId AND status = 'APPROVED' " +
+                    "AND start_time <= :now) a " +
+                    "WHERE a.rn = 1";
+    private static final Comparator<CommentDto> COMMENT_ORDER = Comparator.comparing(CommentDto::getCreated)
+            .thenComparing(CommentDto::getId);
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Optional<ItemDetails> findItemDetails(Long itemId, Long viewerId, int latestComments,
+                                                 LocalDateTime bookingsAt) {
+        List<Object[]> items = entityManager.createQuery(ITEM_JPQL, Object[].class)
+                .setParameter("itemId", itemId)
+                .setParameter("viewerId", viewerId)
+                .getResultList();
+        if (items.isEmpty()) {
+            return Optional.empty();
+        }
+        ItemDetails details = new ItemDetails();
+        details.setItem((Item) items.get(0)[0]);
+        details.setViewerExists(((Number) items.get(0)[1]).longValue() > 0);
+        if (!details.isViewerExists()) {
+            return Optional.of(details);
+        }
+
+        boolean withBookings = bookingsAt != null && details.getItem().getOwner().getId().equals(viewerId);
+        @SuppressWarnings("unchecked")
+        List<Tuple> rows = entityManager.createNativeQuery(CHILDREN_SQL, Tuple.class)
+                .setParameter("itemId", itemId)
+                .setParameter("latest", latestComments)
+                .setParameter("now", bookingsAt == null ? LocalDateTime.now() : bookingsAt)
+                .setParameter("withBookings", withBookings)
+                .getResultList();
+        for (Tuple row : rows) {
+            Long id = ((Number) row.get("id")).longValue();
+            Long userId = ((Number) row.get("user_id")).longValue();
+            LocalDateTime time1 = toLocalDateTime(row.get("time1"));
+            switch ((String) row.get("kind")) {
+                case "LAST":
+                    details.setLastBooking(latest(details.getLastBooking(),
+                            new BookingDtoItem(id, userId, time1, toLocalDateTime(row.get("time2")))));
+                    break;
+                case "NEXT":
+                    details.setNextBooking(new BookingDtoItem(id, userId, time1, toLocalDateTime(row.get("time2"))));
+                    break;
+                default:
+                    details.getComments().add(new CommentDto(id, (String) row.get("text"),
+                            (String) row.get("user_name"), time1));
+                    break;
+            }
+        }
+        details.getComments().sort(COMMENT_ORDER);
+        return Optional.of(details);
+    }
+
+    private static BookingDtoItem latest(BookingDtoItem current, BookingDtoItem candidate) {
+        return current == null || candidate.getStart().isAfter(current.getStart()) ? candidate : current;
+    }
+
+    private static LocalDateTime toLocalDateTime(Object value) {
+        if (value instanceof Timestamp) {
+            return ((Timestamp) value).toLocalDateTime();
+        }
+        return (LocalDateTime) value;
+    }
+}
@@ -17,7 +17,8 @@ import java.util.Objects;
 public class User {
     @Id
     @Column(name = "user_id")
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_seq")
+    @SequenceGenerator(name = "users_seq", sequenceName = "users_seq", allocationSize = 100)
     private Long id;
     @Column(name = "name", nullable = false)
     private String name;
@@ -1,11 +1,25 @@
 drop table if exists users cascade;
 drop table if exists items cascade;
 drop table if exists bookings;
+drop table if exists bookings_archive;
 drop table if exists comments;
 drop table if exists requests;
+drop sequence if exists users_seq;
+drop sequence if exists items_seq;
+drop sequence if exists bookings_seq;
+drop sequence if exists comments_seq;
+drop sequence if exists requests_seq;
+
+-- Hibernate берет значение последовательности и сам раздает следующие INCREMENT BY идентификаторов,
+-- поэтому вставки уходят пакетами. Размер блока задается здесь, в сущностях только значение по умолчанию.
+CREATE SEQUENCE IF NOT EXISTS users_seq START WITH 1 INCREMENT BY 100;
+CREATE SEQUENCE IF NOT EXISTS items_seq START WITH 1 INCREMENT BY 100;
+CREATE SEQUENCE IF NOT EXISTS bookings_seq START WITH 1 INCREMENT BY 100;
+CREATE SEQUENCE IF NOT EXISTS comments_seq START WITH 1 INCREMENT BY 100;
+CREATE SEQUENCE IF NOT EXISTS requests_seq START WITH 1 INCREMENT BY 100;
 
 CREATE TABLE IF NOT EXISTS users (
-    user_id BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+    user_id BIGINT NOT NULL,
     name VARCHAR(255) NOT NULL,
     email VARCHAR(512) NOT NULL,
     CONSTRAINT pk_user PRIMARY KEY (user_id),
@@ -14,17 +28,18 @@ CREATE TABLE IF NOT EXISTS users (
 );
 
 CREATE TABLE IF NOT EXISTS items (
-    item_id BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+    item_id BIGINT NOT NULL,
     name VARCHAR(255) NOT NULL,
     description VARCHAR(512) NOT NULL,
     available BOOLEAN NOT NULL,
     owner_id BIGINT REFERENCES users (user_id) NOT NULL,
     request_id BIGINT,
+    comment_count INTEGER DEFAULT 0 NOT NULL,
     PRIMARY KEY (item_id)
 );
 
 CREATE TABLE IF NOT EXISTS bookings (
-    booking_id BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+    booking_id BIGINT NOT NULL,
     start_time TIMESTAMP WITHOUT TIME ZONE NOT NULL,
     end_time TIMESTAMP WITHOUT TIME ZONE NOT NULL,
     item_id BIGINT REFERENCES items (item_id) NOT NULL,
@@ -33,9 +48,18 @@ CREATE TABLE IF NOT EXISTS bookings (
     PRIMARY KEY (booking_id)
 );
 
+CREATE TABLE IF NOT EXISTS bookings_archive (
+    booking_id BIGINT NOT NULL,
+    start_time TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    end_time TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    item_id BIGINT REFERENCES items (item_id) NOT NULL,
+    booker_id BIGINT REFERENCES users (user_id) NOT NULL,
+    status VARCHAR(64) NOT NULL,
+    PRIMARY KEY (booking_id)
+);
 
 CREATE TABLE IF NOT EXISTS requests (
-    id BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+    id BIGINT NOT NULL,
     description VARCHAR(512) NOT NULL,
     requester_id BIGINT REFERENCES users (user_id) NOT NULL,
     created TIMESTAMP WITHOUT TIME ZONE NOT NULL,
@@ -43,10 +67,19 @@ CREATE TABLE IF NOT EXISTS requests (
 );
 
 CREATE TABLE IF NOT EXISTS comments (
-    comment_id BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+    comment_id BIGINT NOT NULL,
     text VARCHAR(512) NOT NULL,
     item_id BIGINT REFERENCES items (item_id) NOT NULL,
     author_id BIGINT REFERENCES users (user_id) NOT NULL,
     created TIMESTAMP WITHOUT TIME ZONE NOT NULL,
     PRIMARY KEY (comment_id)
 );
+
+CREATE INDEX IF NOT EXISTS idx_bookings_booker_start ON bookings (booker_id, start_time DESC, booking_id DESC);
+CREATE INDEX IF NOT EXISTS idx_bookings_item_start ON bookings (item_id, start_time DESC, booking_id DESC);
+CREATE INDEX IF NOT EXISTS idx_items_owner ON items (owner_id, item_id);
+CREATE INDEX IF NOT EXISTS idx_comments_item ON comments (item_id, created DESC, comment_id DESC);
+CREATE INDEX IF NOT EXISTS idx_bookings_end ON bookings (end_time);
+CREATE INDEX IF NOT EXISTS idx_bookings_status_start ON bookings (status, start_time);
+CREATE INDEX IF NOT EXISTS idx_bookings_archive_booker_start ON bookings_archive (booker_id, start_time DESC, booking_id DESC);
+CREATE INDEX IF NOT EXISTS idx_bookings_archive_item_start ON bookings_archive (item_id, start_time DESC, booking_id DESC);
@@ -7,11 +7,22 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import ru.practicum.shareit.OffsetPageRequest;
+import ru.practicum.shareit.StatsAccess;
+import ru.practicum.shareit.booking.dto.BookingBatchResult;
+import ru.practicum.shareit.booking.dto.BookingBulkResult;
+import ru.practicum.shareit.booking.dto.BookingCompactDto;
+import ru.practicum.shareit.booking.dto.BookingCompactPage;
 import ru.practicum.shareit.booking.dto.BookingDto;
 import ru.practicum.shareit.booking.dto.BookingDtoRequest;
+import ru.practicum.shareit.booking.dto.BookingPage;
+import ru.practicum.shareit.booking.dto.BookingStatsDto;
+import ru.practicum.shareit.booking.dto.BookingSweepReport;
+import ru.practicum.shareit.booking.dto.BookingSweepStats;
 import ru.practicum.shareit.booking.service.BookingService;
 import ru.practicum.shareit.booking.storage.BookingStatus;
 import ru.practicum.shareit.item.model.Item;
@@ -19,15 +30,20 @@ import ru.practicum.shareit.user.model.User;
 
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.Collections;
 import java.util.List;
 
 import static org.hamcrest.Matchers.is;
 import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
-@WebMvcTest(BookingController.class)
+@WebMvcTest(controllers = BookingController.class, properties = "shareit.stats.admin-ids=1,5")
+@Import(StatsAccess.class)
 @AutoConfigureMockMvc
 class BookingControllerTest {
     @MockBean
@@ -53,6 +69,8 @@ class BookingControllerTest {
             .booker(userTwo)
             .status(BookingStatus.WAITING)
             .build();
+    private final BookingCompactDto compactDto = new BookingCompactDto(bookingDto.getId(), bookingDto.getStart(),
+            bookingDto.getEnd(), bookingDto.getStatus(), userTwo.getId(), item.getId(), item.getName());
 
 
     @SneakyThrows
@@ -135,6 +153,28 @@ class BookingControllerTest {
                 .andExpect(jsonPath("$[0].status", is(bookingDto.getStatus().toString()), String.class));
     }
 
+    @SneakyThrows
+    @Test
+    void findAllByState_whenFromNotMultipleOfSize_thenOffsetPassedAsIs() {
+        when(bookingService.findAllByUser(any(), anyString(), any())).thenReturn(List.of(bookingDto));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/bookings")
+                        .header("X-Sharer-User-Id", 1L)
+                        .param("from", "3")
+                        .param("size", "2")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+        mockMvc.perform(MockMvcRequestBuilders.get("/bookings/owner")
+                        .header("X-Sharer-User-Id", 1L)
+                        .param("from", "3")
+                        .param("size", "2")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        verify(bookingService).findAllByUser(1L, "ALL", OffsetPageRequest.of(3, 2));
+        verify(bookingService).findAllByOwner(1L, "ALL", OffsetPageRequest.of(3, 2));
+    }
+
     @SneakyThrows
     @Test
     void findAllByOwner() {
@@ -154,4 +194,177 @@ class BookingControllerTest {
                 .andExpect(jsonPath("$[0].booker.id", is(bookingDto.getBooker().getId()), Long.class))
                 .andExpect(jsonPath("$[0].status", is(bookingDto.getStatus().toString()), String.class));
     }
-}
\ No newline at end of file
+
+    @SneakyThrows
+    @Test
+    void findAllByStateWithCursor() {
+        when(bookingService.findAllByUser(anyLong(), anyString(), anyString(), anyInt()))
+                .thenReturn(new BookingPage(List.of(bookingDto), "next"));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/bookings")
+                        .header("X-Sharer-User-Id", 1L)
+                        .param("size", "1")
+                        .param("cursor", "current")
+                        .param("state", "ALL")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(BookingController.NEXT_CURSOR_HEADER, "next"))
+                .andExpect(jsonPath("$[0].id", is(bookingDto.getId()), Long.class));
+    }
+
+    @SneakyThrows
+    @Test
+    void findAllByOwnerFirstPageWithoutNextCursor() {
+        when(bookingService.findAllByOwner(anyLong(), anyString(), isNull(), anyInt()))
+                .thenReturn(new BookingPage(List.of(bookingDto), null));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/bookings/owner")
+                        .header("X-Sharer-User-Id", 1L)
+                        .param("state", "ALL")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(BookingController.NEXT_CURSOR_HEADER))
+                .andExpect(jsonPath("$[0].id", is(bookingDto.getId()), Long.class));
+    }
+
+    @SneakyThrows
+    @Test
+    void findAllByOwnerCompactView() {
+        when(bookingService.findAllByOwnerCompact(anyLong(), anyString(), isNull(), anyInt()))
+                .thenReturn(new BookingCompactPage(List.of(compactDto), "next"));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/bookings/owner")
+                        .header("X-Sharer-User-Id", 1L)
+                        .param("view", "compact")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(BookingController.NEXT_CURSOR_HEADER, "next"))
+                .andExpect(jsonPath("$[0].id", is(bookingDto.getId()), Long.class))
+                .andExpect(jsonPath("$[0].itemId", is(bookingDto.getItem().getId()), Long.class))
+                .andExpect(jsonPath("$[0].itemName", is(bookingDto.getItem().getName())))
+                .andExpect(jsonPath("$[0].bookerId", is(bookingDto.getBooker().getId()), Long.class))
+                .andExpect(jsonPath("$[0].item").doesNotExist())
+                .andExpect(jsonPath("$[0].booker").doesNotExist());
+    }
+
+    @SneakyThrows
+    @Test
+    void findAllByStateCompactViewWithOffset() {
+        when(bookingService.findAllByUserCompact(1L, "ALL", OffsetPageRequest.of(10, 10)))
+                .thenReturn(List.of(compactDto));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/bookings")
+                        .header("X-Sharer-User-Id", 1L)
+                        .param("view", "compact")
+                        .param("from", "10")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].itemId", is(bookingDto.getItem().getId()), Long.class))
+                .andExpect(jsonPath("$[0].item").doesNotExist());
+    }
+
+    @SneakyThrows
+    @Test
+    void saveBatch() {
+        when(bookingService.addBookings(anyLong(), anyList())).thenReturn(List.of(
+                BookingBatchResult.builder().index(0).booking(bookingDto).build(),
+                BookingBatchResult.builder().index(1).error("Предмет не найден 99").build()));
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/bookings/batch")
+                        .header("X-Sharer-User-Id", 1L)
+                        .content(mapper.writeValueAsString(List.of(bookingRequest, bookingRequest)))
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].booking.id", is(bookingDto.getId()), Long.class))
+                .andExpect(jsonPath("$[1].index", is(1)))
+                .andExpect(jsonPath("$[1].error", is("Предмет не найден 99")));
+    }
+
+    @SneakyThrows
+    @Test
+    void saveBatch_whenNullEntry_thenBadRequest() {
+        mockMvc.perform(MockMvcRequestBuilders.post("/bookings/batch")
+                        .header("X-Sharer-User-Id", 1L)
+                        .content("[null]")
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+        verify(bookingService, never()).addBookings(anyLong(), anyList());
+    }
+
+    @SneakyThrows
+    @Test
+    void saveBatch_whenTooLarge_thenBadRequest() {
+        List<BookingDtoRequest> requests = Collections.nCopies(BookingController.MAX_BATCH_SIZE + 1, bookingRequest);
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/bookings/batch")
+                        .header("X-Sharer-User-Id", 1L)
+                        .content(mapper.writeValueAsString(requests))
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+        verify(bookingService, never()).addBookings(anyLong(), anyList());
+    }
+
+    @Test
+    void patchBookings() throws Exception {
+        when(bookingService.patchBookings(anyLong(), any(), any())).thenReturn(List.of(
+                BookingBulkResult.builder().bookingId(1L).status(BookingStatus.APPROVED).build(),
+                BookingBulkResult.builder().bookingId(2L).status(BookingStatus.WAITING)
+                        .error("Доступ запрещен!").build()));
+
+        mockMvc.perform(MockMvcRequestBuilders.patch("/bookings/batch")
+                        .header("X-Sharer-User-Id", 1L)
+                        .param("approved", "true")
+                        .content(mapper.writeValueAsString(List.of(1L, 2L)))
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].bookingId", is(1)))
+                .andExpect(jsonPath("$[0].status", is("APPROVED")))
+                .andExpect(jsonPath("$[1].error", is("Доступ запрещен!")));
+    }
+
+    @Test
+    void getStatsByOwner() throws Exception {
+        when(bookingService.getStatsByOwner(anyLong())).thenReturn(new BookingStatsDto(5L, 1L, 2L, 2L, 1L, 0L));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/bookings/owner/stats")
+                        .header("X-Sharer-User-Id", 1L)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.all", is(5)))
+                .andExpect(jsonPath("$.past", is(2)))
+                .andExpect(jsonPath("$.rejected", is(0)));
+    }
+
+    @Test
+    void getSweepStats() throws Exception {
+        when(bookingService.getSweepStats()).thenReturn(new BookingSweepStats(7L,
+                BookingSweepReport.builder().chunks(2).selected(7).canceled(7).build()));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/bookings/sweeper/stats")
+                        .header("X-Sharer-User-Id", 5L)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalCanceled", is(7)))
+                .andExpect(jsonPath("$.lastReport.chunks", is(2)));
+    }
+
+    @Test
+    void getSweepStats_whenNotAdmin_thenForbidden() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/bookings/sweeper/stats")
+                        .header("X-Sharer-User-Id", 2L)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(MockMvcRequestBuilders.get("/bookings/sweeper/stats")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+        verify(bookingService, never()).getSweepStats();
+    }
+}
@@ -0,0 +1,74 @@
+package ru.practicum.shareit.booking.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.practicum.shareit.booking.dto.BookingDto;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.storage.BookingArchiveRepository;
+import ru.practicum.shareit.booking.storage.BookingRepository;
+import ru.practicum.shareit.booking.storage.BookingStatus;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.storage.ItemRepository;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.storage.UserRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest(properties = {
+        "shareit.booking.archive.age=P30D",
+        "shareit.booking.archive.chunk-size=2"
+})
+class BookingArchiverTest {
+    @Autowired
+    private BookingArchiver bookingArchiver;
+    @Autowired
+    private BookingService bookingService;
+    @Autowired
+    private BookingRepository bookingRepository;
+    @Autowired
+    private BookingArchiveRepository bookingArchiveRepository;
+    @Autowired
+    private ItemRepository itemRepository;
+    @Autowired
+    private UserRepository userRepository;
+
+    @AfterEach
+    void afterEach() {
+        bookingArchiveRepository.deleteAll();
+        bookingRepository.deleteAll();
+        itemRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void archive_whenOldBookingsExist_thenMoveThemInChunks() {
+        LocalDateTime now = LocalDateTime.now();
+        User owner = userRepository.save(new User(null, "owner", "archive-owner@gmail.com"));
+        User booker = userRepository.save(new User(null, "booker", "archive-booker@gmail.com"));
+        Item item = itemRepository.save(new Item(null, "item", "description", true, owner, null));
+        List<Booking> old = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            old.add(bookingRepository.save(new Booking(null, now.minusDays(100 + i), now.minusDays(99 + i),
+                    item, booker, BookingStatus.APPROVED)));
+        }
+        Booking recent = bookingRepository.save(
+                new Booking(null, now.minusDays(2), now.minusDays(1), item, booker, BookingStatus.APPROVED));
+
+        assertEquals(5, bookingArchiver.archive());
+        assertEquals(0, bookingArchiver.archive());
+
+        assertEquals(1, bookingRepository.count());
+        assertEquals(5, bookingArchiveRepository.count());
+        BookingDto archived = bookingService.findById(booker.getId(), old.get(0).getId());
+        assertEquals(old.get(0).getId(), archived.getId());
+        assertEquals(6, bookingService.getStatsByOwner(owner.getId()).getPast());
+        assertEquals(recent.getId(), bookingService.findAllByUser(booker.getId(), "PAST", null, 1)
+                .getBookings().get(0).getId());
+    }
+}
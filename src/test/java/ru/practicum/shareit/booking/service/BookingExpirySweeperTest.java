@@ -0,0 +1,67 @@
+package ru.practicum.shareit.booking.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.practicum.shareit.booking.dto.BookingSweepReport;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.storage.BookingRepository;
+import ru.practicum.shareit.booking.storage.BookingStatus;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.storage.ItemRepository;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.storage.UserRepository;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest(properties = "shareit.booking.expiry.chunk-size=2")
+class BookingExpirySweeperTest {
+    @Autowired
+    private BookingExpirySweeper bookingExpirySweeper;
+    @Autowired
+    private BookingRepository bookingRepository;
+    @Autowired
+    private ItemRepository itemRepository;
+    @Autowired
+    private UserRepository userRepository;
+
+    @AfterEach
+    void afterEach() {
+        bookingRepository.deleteAll();
+        itemRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void sweep_whenWaitingBookingsStarted_thenCancelInChunks() {
+        LocalDateTime now = LocalDateTime.now();
+        User owner = userRepository.save(new User(null, "owner", "sweep-owner@gmail.com"));
+        User booker = userRepository.save(new User(null, "booker", "sweep-booker@gmail.com"));
+        Item item = itemRepository.save(new Item(null, "item", "description", true, owner, null));
+        for (int i = 1; i <= 5; i++) {
+            bookingRepository.save(new Booking(null, now.minusHours(i), now.plusHours(i), item, booker, BookingStatus.WAITING));
+        }
+        Booking future = bookingRepository.save(
+                new Booking(null, now.plusDays(1), now.plusDays(2), item, booker, BookingStatus.WAITING));
+        Booking approved = bookingRepository.save(
+                new Booking(null, now.minusDays(1), now.plusDays(2), item, booker, BookingStatus.APPROVED));
+        long canceledBefore = bookingExpirySweeper.getStats().getTotalCanceled();
+
+        BookingSweepReport report = bookingExpirySweeper.sweep();
+
+        assertEquals(3, report.getChunks());
+        assertEquals(5, report.getSelected());
+        assertEquals(5, report.getCanceled());
+        assertEquals(5, bookingExpirySweeper.getStats().getTotalCanceled() - canceledBefore);
+        assertEquals(report, bookingExpirySweeper.getStats().getLastReport());
+        assertEquals(BookingStatus.WAITING, bookingRepository.findById(future.getId()).orElseThrow().getStatus());
+        assertEquals(BookingStatus.APPROVED, bookingRepository.findById(approved.getId()).orElseThrow().getStatus());
+        assertEquals(5, bookingRepository.findAll().stream()
+                .filter(booking -> booking.getStatus() == BookingStatus.CANCELED)
+                .count());
+        assertEquals(0, bookingExpirySweeper.sweep().getCanceled());
+    }
+}
@@ -0,0 +1,161 @@
+package ru.practicum.shareit.booking.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.storage.BookingRepository;
+import ru.practicum.shareit.booking.storage.BookingStatus;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.user.model.User;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BookingIntervalIndexTest {
+    private final LocalDateTime base = LocalDateTime.parse("2030-01-01T10:00");
+    private final User owner = new User(1L, "owner", "owner@gmail.com");
+    private final User booker = new User(2L, "booker", "booker@gmail.com");
+    private final Item item = new Item(1L, "item", "description", true, owner, null);
+    private BookingRepository bookingRepository;
+    private BookingIntervalIndex index;
+
+    @BeforeEach
+    void beforeEach() {
+        bookingRepository = Mockito.mock(BookingRepository.class);
+        index = new BookingIntervalIndex(bookingRepository, 100);
+    }
+
+    @Test
+    void isFree_whenNoBookings_thenTrueAndLoadedOnce() {
+        assertTrue(index.isFree(item.getId(), base, base.plusHours(1)));
+        assertTrue(index.isFree(item.getId(), base.plusHours(2), base.plusHours(3)));
+
+        verify(bookingRepository, times(1)).getActiveBookings(anyLong());
+    }
+
+    @Test
+    void isFree_whenOverlapsLoadedBooking_thenFalse() {
+        when(bookingRepository.getActiveBookings(anyLong())).thenReturn(List.of(
+                booking(1L, 0, 2, BookingStatus.APPROVED),
+                booking(2L, 5, 6, BookingStatus.APPROVED)));
+
+        assertFalse(index.isFree(item.getId(), base.plusHours(1), base.plusHours(3)));
+        assertFalse(index.isFree(item.getId(), base.plusHours(4), base.plusHours(7)));
+        assertTrue(index.isFree(item.getId(), base.plusHours(2), base.plusHours(5)));
+        assertTrue(index.isFree(item.getId(), base.plusHours(6), base.plusHours(8)));
+    }
+
+    @Test
+    void isFree_whenLongBookingCoversLaterStarts_thenFalse() {
+        when(bookingRepository.getActiveBookings(anyLong())).thenReturn(List.of(
+                booking(1L, 0, 10, BookingStatus.APPROVED),
+                booking(2L, 1, 2, BookingStatus.APPROVED)));
+
+        assertFalse(index.isFree(item.getId(), base.plusHours(4), base.plusHours(5)));
+    }
+
+    @Test
+    void onSaved_whenApprovedThenRejected_thenIndexFollowsStatus() {
+        assertTrue(index.isFree(item.getId(), base, base.plusHours(1)));
+
+        index.onSaved(booking(3L, 0, 1, BookingStatus.WAITING));
+        assertTrue(index.isFree(item.getId(), base, base.plusHours(1)));
+
+        index.onSaved(booking(3L, 0, 1, BookingStatus.APPROVED));
+        assertFalse(index.isFree(item.getId(), base, base.plusHours(1)));
+
+        index.onSaved(booking(3L, 0, 1, BookingStatus.REJECTED));
+        assertTrue(index.isFree(item.getId(), base, base.plusHours(1)));
+    }
+
+    @Test
+    void onSaved_whenCommittedWhileLoading_thenLoadNotKeptAndReloaded() throws InterruptedException {
+        Thread[] committer = new Thread[1];
+        when(bookingRepository.getActiveBookings(anyLong())).thenAnswer(invocation -> {
+            committer[0] = new Thread(() -> index.onSaved(booking(4L, 0, 1, BookingStatus.APPROVED)));
+            committer[0].start();
+            committer[0].join();
+            return List.of();
+        }).thenReturn(List.of(booking(4L, 0, 1, BookingStatus.APPROVED)));
+
+        assertTrue(index.isFree(item.getId(), base.plusHours(5), base.plusHours(6)));
+
+        assertFalse(index.isFree(item.getId(), base, base.plusHours(1)));
+        assertFalse(index.isFree(item.getId(), base, base.plusHours(1)));
+        verify(bookingRepository, times(2)).getActiveBookings(anyLong());
+    }
+
+    @Test
+    void isFree_whenOtherItemLoading_thenNotBlocked() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(bookingRepository.getActiveBookings(1L)).thenAnswer(invocation -> {
+            loading.countDown();
+            release.await();
+            return List.of();
+        });
+        Thread slow = new Thread(() -> index.isFree(1L, base, base.plusHours(1)));
+        slow.start();
+        loading.await();
+
+        try {
+            CompletableFuture<Boolean> other = CompletableFuture.supplyAsync(
+                    () -> index.isFree(2L, base, base.plusHours(1)));
+            assertTrue(other.get(5, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            slow.join();
+        }
+    }
+
+    @Test
+    void isFree_whenLoadedBookingAlreadyEnded_thenPruned() {
+        LocalDateTime now = LocalDateTime.now();
+        when(bookingRepository.getActiveBookings(anyLong())).thenReturn(List.of(
+                new Booking(1L, now.minusHours(3), now.minusHours(1), item, booker, BookingStatus.APPROVED)));
+
+        assertTrue(index.isFree(item.getId(), now.minusHours(2), now.plusHours(1)));
+    }
+
+    @Test
+    void isFree_whenMoreItemsThanLimit_thenEvictedAndReloaded() {
+        index = new BookingIntervalIndex(bookingRepository, 1);
+
+        index.isFree(1L, base, base.plusHours(1));
+        index.isFree(2L, base, base.plusHours(1));
+        index.isFree(1L, base, base.plusHours(1));
+
+        verify(bookingRepository, times(2)).getActiveBookings(eq(1L));
+    }
+
+    @Test
+    void isFree_whenMoreItemsThanLimit_thenLeastRecentlyCheckedEvicted() {
+        index = new BookingIntervalIndex(bookingRepository, 2);
+
+        index.isFree(1L, base, base.plusHours(1));
+        index.isFree(2L, base, base.plusHours(1));
+        index.isFree(1L, base, base.plusHours(1));
+        index.isFree(3L, base, base.plusHours(1));
+        index.isFree(1L, base, base.plusHours(1));
+        index.isFree(2L, base, base.plusHours(1));
+
+        verify(bookingRepository, times(1)).getActiveBookings(eq(1L));
+        verify(bookingRepository, times(2)).getActiveBookings(eq(2L));
+    }
+
+    private Booking booking(Long id, int startHour, int endHour, BookingStatus status) {
+        return new Booking(id, base.plusHours(startHour), base.plusHours(endHour), item, booker, status);
+    }
+}
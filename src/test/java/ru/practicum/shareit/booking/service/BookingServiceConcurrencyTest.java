@@ -0,0 +1,189 @@
+package ru.practicum.shareit.booking.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.practicum.shareit.booking.dto.BookingBatchResult;
+import ru.practicum.shareit.booking.dto.BookingBulkResult;
+import ru.practicum.shareit.booking.dto.BookingDtoRequest;
+import ru.practicum.shareit.booking.exceptions.DateConflictException;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.storage.BookingRepository;
+import ru.practicum.shareit.booking.storage.BookingStatus;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.storage.ItemRepository;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.storage.UserRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class BookingServiceConcurrencyTest {
+    private static final int THREADS = 16;
+
+    @Autowired
+    private BookingService bookingService;
+    @Autowired
+    private BookingRepository bookingRepository;
+    @Autowired
+    private ItemRepository itemRepository;
+    @Autowired
+    private UserRepository userRepository;
+
+    @AfterEach
+    void afterEach() {
+        bookingRepository.deleteAll();
+        itemRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void patchBooking_whenConcurrentApprovalsOfOverlappingBookings_thenOnlyOneApproved() throws Exception {
+        User owner = userRepository.save(new User(null, "owner", "concurrency-owner@gmail.com"));
+        User booker = userRepository.save(new User(null, "booker", "concurrency-booker@gmail.com"));
+        Item item = itemRepository.save(new Item(null, "item", "description", true, owner, null));
+        List<Long> bookingIds = createWaitingBookings(booker, item, THREADS);
+
+        AtomicInteger conflicts = approveConcurrently(owner, bookingIds);
+
+        assertEquals(THREADS - 1, conflicts.get());
+        assertEquals(1, countApproved(item));
+    }
+
+    @Test
+    void patchBooking_whenConcurrentApprovalsForDifferentItems_thenEachItemApprovedOnce() throws Exception {
+        User owner = userRepository.save(new User(null, "owner", "concurrency-owner@gmail.com"));
+        User booker = userRepository.save(new User(null, "booker", "concurrency-booker@gmail.com"));
+        Item first = itemRepository.save(new Item(null, "first", "description", true, owner, null));
+        Item second = itemRepository.save(new Item(null, "second", "description", true, owner, null));
+        List<Long> bookingIds = new ArrayList<>(createWaitingBookings(booker, first, THREADS / 2));
+        bookingIds.addAll(createWaitingBookings(booker, second, THREADS / 2));
+
+        AtomicInteger conflicts = approveConcurrently(owner, bookingIds);
+
+        assertEquals(THREADS - 2, conflicts.get());
+        assertEquals(1, countApproved(first));
+        assertEquals(1, countApproved(second));
+    }
+
+    @Test
+    void addBookings_whenConcurrentBatchesOverlapItems_thenAllSaved() throws Exception {
+        User owner = userRepository.save(new User(null, "owner", "concurrency-owner@gmail.com"));
+        User booker = userRepository.save(new User(null, "booker", "concurrency-booker@gmail.com"));
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            items.add(itemRepository.save(new Item(null, "item" + i, "description", true, owner, null)));
+        }
+        LocalDateTime start = LocalDateTime.now().plusDays(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<List<BookingBatchResult>>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < THREADS; i++) {
+                List<BookingDtoRequest> requests = new ArrayList<>();
+                for (int j = 0; j < items.size(); j++) {
+                    Item item = items.get((i + j) % items.size());
+                    requests.add(new BookingDtoRequest(null, item.getId(), start.plusHours(i), start.plusHours(i + 1)));
+                }
+                futures.add(executor.submit(() -> bookingService.addBookings(booker.getId(), requests)));
+            }
+            for (Future<List<BookingBatchResult>> future : futures) {
+                assertTrue(future.get(30, TimeUnit.SECONDS).stream().allMatch(result -> result.getError() == null));
+            }
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        }
+
+        assertEquals(THREADS * items.size(), bookingRepository.count());
+    }
+
+    @Test
+    void patchBookings_whenBulkApprovalRacesSingleApprovals_thenNoOverlapApproved() throws Exception {
+        User owner = userRepository.save(new User(null, "owner", "concurrency-owner@gmail.com"));
+        User booker = userRepository.save(new User(null, "booker", "concurrency-booker@gmail.com"));
+        Item item = itemRepository.save(new Item(null, "item", "description", true, owner, null));
+        List<Long> bookingIds = createWaitingBookings(booker, item, THREADS);
+        List<Long> bulkIds = bookingIds.subList(0, THREADS / 2);
+        List<Long> singleIds = bookingIds.subList(THREADS / 2, THREADS);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<List<BookingBulkResult>> bulk = executor.submit(
+                    () -> bookingService.patchBookings(owner.getId(), bulkIds, true));
+            AtomicInteger conflicts = approveConcurrently(owner, singleIds);
+            List<BookingBulkResult> results = bulk.get(30, TimeUnit.SECONDS);
+            assertEquals(THREADS / 2, results.size());
+            long bulkConflicts = results.stream().filter(result -> result.getError() != null).count();
+            assertEquals(THREADS - 1, conflicts.get() + bulkConflicts);
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        }
+
+        assertEquals(1, countApproved(item));
+    }
+
+    private List<Long> createWaitingBookings(User booker, Item item, int count) {
+        LocalDateTime start = LocalDateTime.now().plusDays(1);
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            BookingDtoRequest request = BookingDtoRequest.builder()
+                    .itemId(item.getId())
+                    .start(start.plusMinutes(i))
+                    .end(start.plusHours(2).plusMinutes(i))
+                    .build();
+            ids.add(bookingService.addBooking(booker.getId(), request).getId());
+        }
+        return ids;
+    }
+
+    private AtomicInteger approveConcurrently(User owner, List<Long> bookingIds) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(bookingIds.size());
+        CountDownLatch startGate = new CountDownLatch(1);
+        AtomicInteger conflicts = new AtomicInteger();
+        List<Future<Object>> futures = new ArrayList<>();
+        try {
+            for (Long bookingId : bookingIds) {
+                Callable<Object> approve = () -> {
+                    startGate.await();
+                    try {
+                        return bookingService.patchBooking(owner.getId(), bookingId, true);
+                    } catch (DateConflictException e) {
+                        conflicts.incrementAndGet();
+                        return null;
+                    }
+                };
+                futures.add(executor.submit(approve));
+            }
+            startGate.countDown();
+            for (Future<Object> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        }
+        return conflicts;
+    }
+
+    private long countApproved(Item item) {
+        return bookingRepository.findAll().stream()
+                .filter(booking -> booking.getItem().getId().equals(item.getId()))
+                .map(Booking::getStatus)
+                .filter(BookingStatus.APPROVED::equals)
+                .count();
+    }
+}
@@ -8,14 +8,26 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.Pageable;
+import ru.practicum.shareit.booking.dto.BookingBatchResult;
+import ru.practicum.shareit.booking.dto.BookingBulkResult;
+import ru.practicum.shareit.booking.dto.BookingCompactDto;
+import ru.practicum.shareit.booking.dto.BookingCompactPage;
 import ru.practicum.shareit.booking.dto.BookingDto;
 import ru.practicum.shareit.booking.dto.BookingDtoRequest;
+import ru.practicum.shareit.booking.dto.BookingOwnershipDto;
+import ru.practicum.shareit.booking.dto.BookingPage;
+import ru.practicum.shareit.booking.dto.BookingStatsDto;
 import ru.practicum.shareit.booking.exceptions.DateConflictException;
+import ru.practicum.shareit.booking.exceptions.InvalidCursorException;
 import ru.practicum.shareit.booking.exceptions.UnavaibleDatePeriodException;
 import ru.practicum.shareit.booking.exceptions.UnavailableBookingException;
 import ru.practicum.shareit.booking.exceptions.UnsupportedStatusException;
 import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.storage.BookingArchiveRepository;
+import ru.practicum.shareit.booking.storage.BookingCursor;
 import ru.practicum.shareit.booking.storage.BookingRepository;
+import ru.practicum.shareit.booking.storage.BookingRole;
+import ru.practicum.shareit.booking.storage.BookingState;
 import ru.practicum.shareit.booking.storage.BookingStatus;
 import ru.practicum.shareit.item.exceptions.ItemNotAvailibleException;
 import ru.practicum.shareit.item.exceptions.ItemNotFoundException;
@@ -33,6 +45,8 @@ import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
@@ -52,6 +66,8 @@ class BookingServiceImplTest {
     UserRepository userRepository;
     @Mock
     ItemRepository itemRepository;
+    @Mock
+    BookingArchiveRepository bookingArchiveRepository;
     BookingService bookingService;
     private final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
 
@@ -63,11 +79,17 @@ class BookingServiceImplTest {
         bookingMapper = Mappers.getMapper(BookingMapper.class);
         userRepository = Mockito.mock(UserRepository.class);
         itemRepository = Mockito.mock(ItemRepository.class);
+        bookingArchiveRepository = Mockito.mock(BookingArchiveRepository.class);
         bookingService = new BookingServiceImpl(
                 userRepository,
                 itemRepository,
                 bookingRepository,
-                bookingMapper
+                bookingMapper,
+                new BookingIntervalIndex(bookingRepository, 100),
+                new BookingItemLocks(),
+                bookingArchiveRepository,
+                new ItemBookingCache(bookingRepository, 100),
+                Mockito.mock(BookingExpirySweeper.class)
         );
     }
 
@@ -91,7 +113,7 @@ class BookingServiceImplTest {
                 .build();
 
         when(userRepository.findById(any())).thenReturn(Optional.of(userTwo));
-        when(itemRepository.findById(any())).thenReturn(Optional.of(item));
+        when(itemRepository.findForUpdateById(any())).thenReturn(Optional.of(item));
         when(bookingRepository.save(any())).thenReturn(booking);
         when(itemRepository.existsItemByIdAndAvailableIsTrue(anyLong())).thenReturn(true);
 
@@ -143,7 +165,7 @@ class BookingServiceImplTest {
                 .build();
 
         when(userRepository.findById(any())).thenReturn(Optional.of(userOne));
-        when(itemRepository.findById(any())).thenReturn(Optional.empty());
+        when(itemRepository.findForUpdateById(any())).thenReturn(Optional.empty());
 
         assertThrows(ItemNotFoundException.class, () -> bookingService.addBooking(userTwo.getId(), bookingRequest));
     }
@@ -159,7 +181,7 @@ class BookingServiceImplTest {
                 .build();
 
         when(userRepository.findById(any())).thenReturn(Optional.of(userOne));
-        when(itemRepository.findById(any())).thenReturn(Optional.of(item));
+        when(itemRepository.findForUpdateById(any())).thenReturn(Optional.of(item));
 
         assertThrows(UnavailableBookingException.class, () -> bookingService.addBooking(userOne.getId(), bookingRequest));
     }
@@ -175,7 +197,7 @@ class BookingServiceImplTest {
                 .end(LocalDateTime.now().plusMinutes(16))
                 .build();
         when(userRepository.findById(any())).thenReturn(Optional.of(userOne));
-        when(itemRepository.findById(any())).thenReturn(Optional.of(item));
+        when(itemRepository.findForUpdateById(any())).thenReturn(Optional.of(item));
 
         assertThrows(ItemNotAvailibleException.class, () -> bookingService.addBooking(userTwo.getId(), bookingRequest));
     }
@@ -192,7 +214,7 @@ class BookingServiceImplTest {
                 .build();
 
         when(userRepository.findById(any())).thenReturn(Optional.of(userOne));
-        when(itemRepository.findById(any())).thenReturn(Optional.of(item));
+        when(itemRepository.findForUpdateById(any())).thenReturn(Optional.of(item));
         when(itemRepository.existsItemByIdAndAvailableIsTrue(anyLong())).thenReturn(false);
 
         assertThrows(ItemNotAvailibleException.class, () -> bookingService.addBooking(userTwo.getId(), bookingRequest));
@@ -219,14 +241,14 @@ class BookingServiceImplTest {
         Booking booking2 = Booking.builder()
                 .id(item.getId())
                 .start(LocalDateTime.now().minusMinutes(80))
-                .end(LocalDateTime.now().minusMinutes(50))
+                .end(LocalDateTime.now().plusMinutes(50))
                 .item(item)
                 .booker(userTwo)
                 .status(BookingStatus.APPROVED)
                 .build();
 
         when(userRepository.findById(any())).thenReturn(Optional.of(userOne));
-        when(itemRepository.findById(any())).thenReturn(Optional.of(item));
+        when(itemRepository.findForUpdateById(any())).thenReturn(Optional.of(item));
         when(itemRepository.existsItemByIdAndAvailableIsTrue(anyLong())).thenReturn(true);
         when(bookingRepository.getActiveBookings(anyLong())).thenReturn(List.of(booking, booking2));
 
@@ -252,9 +274,10 @@ class BookingServiceImplTest {
                 .status(BookingStatus.WAITING)
                 .build();
 
-        when(bookingRepository.findById(any())).thenReturn(Optional.of(booking));
+        when(bookingRepository.findItemIdById(any())).thenReturn(Optional.of(item.getId()));
+        when(bookingRepository.findForUpdateById(any())).thenReturn(Optional.of(booking));
         when(bookingRepository.save(any())).thenReturn(booking);
-        when(itemRepository.findById(anyLong())).thenReturn(Optional.of(item));
+        when(itemRepository.findForUpdateById(anyLong())).thenReturn(Optional.of(item));
         when(userRepository.findById(anyLong())).thenReturn(Optional.of(userOne));
         BookingDto bookingDto = bookingService.patchBooking(1L, 1L, true);
 
@@ -268,7 +291,7 @@ class BookingServiceImplTest {
     @Test
     void patchBooking_whenBookingDoesNotExist_thenThrowException() {
 
-        when(bookingRepository.findById(any())).thenReturn(Optional.empty());
+        when(bookingRepository.findItemIdById(any())).thenReturn(Optional.empty());
 
         assertThrows(ItemNotFoundException.class, () -> bookingService.patchBooking(1L, 1L, true));
     }
@@ -287,8 +310,8 @@ class BookingServiceImplTest {
                 .status(BookingStatus.WAITING)
                 .build();
 
-        when(bookingRepository.findById(any())).thenReturn(Optional.of(booking));
-        when(itemRepository.findById(anyLong())).thenReturn(Optional.empty());
+        when(bookingRepository.findItemIdById(any())).thenReturn(Optional.of(item.getId()));
+        when(itemRepository.findForUpdateById(anyLong())).thenReturn(Optional.empty());
 
         assertThrows(ItemNotFoundException.class, () -> bookingService.patchBooking(1L, 1L, true));
     }
@@ -307,8 +330,8 @@ class BookingServiceImplTest {
                 .status(BookingStatus.WAITING)
                 .build();
 
-        when(bookingRepository.findById(any())).thenReturn(Optional.of(booking));
-        when(itemRepository.findById(anyLong())).thenReturn(Optional.of(item));
+        when(bookingRepository.findItemIdById(any())).thenReturn(Optional.of(item.getId()));
+        when(itemRepository.findForUpdateById(anyLong())).thenReturn(Optional.of(item));
         when(userRepository.findById(anyLong())).thenReturn(Optional.empty());
 
         assertThrows(ItemNotFoundException.class, () -> bookingService.patchBooking(1L, 1L, true));
@@ -328,8 +351,8 @@ class BookingServiceImplTest {
                 .status(BookingStatus.WAITING)
                 .build();
 
-        when(bookingRepository.findById(any())).thenReturn(Optional.of(booking));
-        when(itemRepository.findById(anyLong())).thenReturn(Optional.of(item));
+        when(bookingRepository.findItemIdById(any())).thenReturn(Optional.of(item.getId()));
+        when(itemRepository.findForUpdateById(anyLong())).thenReturn(Optional.of(item));
         when(userRepository.findById(anyLong())).thenReturn(Optional.of(userTwo));
 
         assertThrows(UserNotFoundException.class, () -> bookingService.patchBooking(1L, 1L, true));
@@ -349,13 +372,60 @@ class BookingServiceImplTest {
                 .status(BookingStatus.APPROVED)
                 .build();
 
-        when(bookingRepository.findById(any())).thenReturn(Optional.of(booking));
-        when(itemRepository.findById(anyLong())).thenReturn(Optional.of(item));
+        when(bookingRepository.findItemIdById(any())).thenReturn(Optional.of(item.getId()));
+        when(bookingRepository.findForUpdateById(any())).thenReturn(Optional.of(booking));
+        when(itemRepository.findForUpdateById(anyLong())).thenReturn(Optional.of(item));
+        when(userRepository.findById(anyLong())).thenReturn(Optional.of(userOne));
+
+        assertThrows(IllegalArgumentException.class, () -> bookingService.patchBooking(1L, 1L, true));
+    }
+
+    @Test
+    void patchBooking_whenBookingCanceled_thenThrowException() {
+        User userOne = new User(1L, "testNameOne", "testEmailOne@gmail.com");
+        User userTwo = new User(2L, "testNameTwo", "testEmailTwo@gmail.com");
+        Item item = new Item(1L, "itemName", "itemDescription", true, userOne, null);
+        Booking booking = Booking.builder()
+                .id(item.getId())
+                .start(LocalDateTime.now().plusMinutes(8))
+                .end(LocalDateTime.now().plusMinutes(16))
+                .item(item)
+                .booker(userTwo)
+                .status(BookingStatus.CANCELED)
+                .build();
+
+        when(bookingRepository.findItemIdById(any())).thenReturn(Optional.of(item.getId()));
+        when(bookingRepository.findForUpdateById(any())).thenReturn(Optional.of(booking));
+        when(itemRepository.findForUpdateById(anyLong())).thenReturn(Optional.of(item));
         when(userRepository.findById(anyLong())).thenReturn(Optional.of(userOne));
 
         assertThrows(IllegalArgumentException.class, () -> bookingService.patchBooking(1L, 1L, true));
+        verify(bookingRepository, never()).save(any());
     }
 
+    @Test
+    void patchBooking_whenBookingRejected_thenApprove() {
+        User userOne = new User(1L, "testNameOne", "testEmailOne@gmail.com");
+        User userTwo = new User(2L, "testNameTwo", "testEmailTwo@gmail.com");
+        Item item = new Item(1L, "itemName", "itemDescription", true, userOne, null);
+        Booking booking = Booking.builder()
+                .id(item.getId())
+                .start(LocalDateTime.now().plusMinutes(8))
+                .end(LocalDateTime.now().plusMinutes(16))
+                .item(item)
+                .booker(userTwo)
+                .status(BookingStatus.REJECTED)
+                .build();
+
+        when(bookingRepository.findItemIdById(any())).thenReturn(Optional.of(item.getId()));
+        when(bookingRepository.findForUpdateById(any())).thenReturn(Optional.of(booking));
+        when(bookingRepository.save(any())).thenReturn(booking);
+        when(itemRepository.findForUpdateById(anyLong())).thenReturn(Optional.of(item));
+        when(userRepository.findById(anyLong())).thenReturn(Optional.of(userOne));
+
+        assertEquals(BookingStatus.APPROVED, bookingService.patchBooking(1L, 1L, true).getStatus());
+        verify(bookingRepository, times(1)).save(any());
+    }
 
     @Test
     void findById_whenValidInput_thenReturnBooking() {
@@ -460,7 +530,7 @@ class BookingServiceImplTest {
                 .build();
 
         when(userRepository.findById(any())).thenReturn(Optional.of(userOne));
-        when(bookingRepository.findAllByBookerIdOrderByStartDesc(anyLong(), any())).thenReturn(List.of(booking));
+        when(bookingRepository.findBookings(eq(BookingRole.BOOKER), anyLong(), eq(BookingState.ALL), any(), any())).thenReturn(List.of(BookingMapper.mapToDto(booking, item)));
 
         List<BookingDto> result = bookingService.findAllByUser(userOne.getId(), "ALL", Pageable.unpaged());
 
@@ -481,7 +551,7 @@ class BookingServiceImplTest {
                 .build();
 
         when(userRepository.findById(any())).thenReturn(Optional.of(userOne));
-        when(bookingRepository.findAllByBookerIdAndStatusOrderByStartDesc(anyLong(), any(), any())).thenReturn(List.of(booking));
+        when(bookingRepository.findBookings(eq(BookingRole.BOOKER), anyLong(), eq(BookingState.REJECTED), any(), any())).thenReturn(List.of(BookingMapper.mapToDto(booking, item)));
 
         List<BookingDto> result = bookingService.findAllByUser(userOne.getId(), "REJECTED", Pageable.unpaged());
 
@@ -502,7 +572,7 @@ class BookingServiceImplTest {
                 .build();
 
         when(userRepository.findById(any())).thenReturn(Optional.of(userOne));
-        when(bookingRepository.findAllByBookerIdAndStatusOrderByStartDesc(anyLong(), any(), any())).thenReturn(List.of(booking));
+        when(bookingRepository.findBookings(eq(BookingRole.BOOKER), anyLong(), eq(BookingState.WAITING), any(), any())).thenReturn(List.of(BookingMapper.mapToDto(booking, item)));
 
         List<BookingDto> result = bookingService.findAllByUser(userOne.getId(), "WAITING", Pageable.unpaged());
 
@@ -523,7 +593,7 @@ class BookingServiceImplTest {
                 .build();
 
         when(userRepository.findById(any())).thenReturn(Optional.of(userOne));
-        when(bookingRepository.findAllByBookerIdAndStartIsBeforeAndEndIsAfterOrderByStartDesc(anyLong(), any(), any(), any())).thenReturn(List.of(booking));
+        when(bookingRepository.findBookings(eq(BookingRole.BOOKER), anyLong(), eq(BookingState.CURRENT), any(), any())).thenReturn(List.of(BookingMapper.mapToDto(booking, item)));
 
         List<BookingDto> result = bookingService.findAllByUser(userOne.getId(), "CURRENT", Pageable.unpaged());
 
@@ -544,7 +614,7 @@ class BookingServiceImplTest {
                 .build();
 
         when(userRepository.findById(any())).thenReturn(Optional.of(userOne));
-        when(bookingRepository.findAllByBookerIdAndStartIsAfterOrderByStartDesc(anyLong(), any(), any())).thenReturn(List.of(booking));
+        when(bookingRepository.findBookings(eq(BookingRole.BOOKER), anyLong(), eq(BookingState.FUTURE), any(), any())).thenReturn(List.of(BookingMapper.mapToDto(booking, item)));
 
         List<BookingDto> result = bookingService.findAllByUser(userOne.getId(), "FUTURE", Pageable.unpaged());
 
@@ -565,7 +635,7 @@ class BookingServiceImplTest {
                 .build();
 
         when(userRepository.findById(any())).thenReturn(Optional.of(userOne));
-        when(bookingRepository.findAllByBookerIdAndEndIsBeforeOrderByStartDesc(anyLong(), any(), any())).thenReturn(List.of(booking));
+        when(bookingRepository.findBookings(eq(BookingRole.BOOKER), anyLong(), eq(BookingState.PAST), any(), any())).thenReturn(List.of(BookingMapper.mapToDto(booking, item)));
 
         List<BookingDto> result = bookingService.findAllByUser(userOne.getId(), "PAST", Pageable.unpaged());
 
@@ -604,7 +674,7 @@ class BookingServiceImplTest {
                 .build();
 
         when(userRepository.findById(anyLong())).thenReturn(Optional.of(userOne));
-        when(bookingRepository.findAllByItemOwnerIdOrderByStartDesc(userOne.getId(), Pageable.unpaged())).thenReturn(List.of(booking));
+        when(bookingRepository.findBookings(eq(BookingRole.OWNER), anyLong(), eq(BookingState.ALL), any(), any())).thenReturn(List.of(BookingMapper.mapToDto(booking, item)));
 
         List<BookingDto> result = bookingService.findAllByOwner(userOne.getId(), "ALL", Pageable.unpaged());
 
@@ -626,7 +696,7 @@ class BookingServiceImplTest {
                 .build();
 
         when(userRepository.findById(anyLong())).thenReturn(Optional.of(userOne));
-        when(bookingRepository.findAllByItemOwnerIdAndStatusOrderByStartDesc(anyLong(), any(), any())).thenReturn(List.of(booking));
+        when(bookingRepository.findBookings(eq(BookingRole.OWNER), anyLong(), eq(BookingState.REJECTED), any(), any())).thenReturn(List.of(BookingMapper.mapToDto(booking, item)));
 
         List<BookingDto> result = bookingService.findAllByOwner(userOne.getId(), "REJECTED", Pageable.unpaged());
 
@@ -647,7 +717,7 @@ class BookingServiceImplTest {
                 .build();
 
         when(userRepository.findById(anyLong())).thenReturn(Optional.of(userOne));
-        when(bookingRepository.findAllByItemOwnerIdAndStatusOrderByStartDesc(anyLong(), any(), any())).thenReturn(List.of(booking));
+        when(bookingRepository.findBookings(eq(BookingRole.OWNER), anyLong(), eq(BookingState.WAITING), any(), any())).thenReturn(List.of(BookingMapper.mapToDto(booking, item)));
 
         List<BookingDto> result = bookingService.findAllByOwner(userOne.getId(), "WAITING", Pageable.unpaged());
 
@@ -668,7 +738,7 @@ class BookingServiceImplTest {
                 .build();
 
         when(userRepository.findById(anyLong())).thenReturn(Optional.of(userOne));
-        when(bookingRepository.findAllByItemOwnerIdAndStartIsBeforeAndEndIsAfterOrderByStartDesc(anyLong(), any(), any(), any())).thenReturn(List.of(booking));
+        when(bookingRepository.findBookings(eq(BookingRole.OWNER), anyLong(), eq(BookingState.CURRENT), any(), any())).thenReturn(List.of(BookingMapper.mapToDto(booking, item)));
 
         List<BookingDto> result = bookingService.findAllByOwner(userOne.getId(), "CURRENT", Pageable.unpaged());
 
@@ -689,7 +759,7 @@ class BookingServiceImplTest {
                 .build();
 
         when(userRepository.findById(anyLong())).thenReturn(Optional.of(userOne));
-        when(bookingRepository.findAllByItemOwnerIdAndStartIsAfterOrderByStartDesc(anyLong(), any(), any())).thenReturn(List.of(booking));
+        when(bookingRepository.findBookings(eq(BookingRole.OWNER), anyLong(), eq(BookingState.FUTURE), any(), any())).thenReturn(List.of(BookingMapper.mapToDto(booking, item)));
 
         List<BookingDto> result = bookingService.findAllByOwner(userOne.getId(), "FUTURE", Pageable.unpaged());
 
@@ -710,7 +780,7 @@ class BookingServiceImplTest {
                 .build();
 
         when(userRepository.findById(anyLong())).thenReturn(Optional.of(userOne));
-        when(bookingRepository.findAllByItemOwnerIdAndEndIsBeforeOrderByStartDesc(anyLong(), any(), any())).thenReturn(List.of(booking));
+        when(bookingRepository.findBookings(eq(BookingRole.OWNER), anyLong(), eq(BookingState.PAST), any(), any())).thenReturn(List.of(BookingMapper.mapToDto(booking, item)));
 
         List<BookingDto> result = bookingService.findAllByOwner(userOne.getId(), "PAST", Pageable.unpaged());
 
@@ -735,4 +805,210 @@ class BookingServiceImplTest {
         assertThrows(UnsupportedStatusException.class, () -> bookingService.findAllByOwner(userOne.getId(), "zzz", Pageable.unpaged()));
     }
 
-}
\ No newline at end of file
+    @Test
+    void findAllByUser_whenCursorPagingAndMoreRows_thenReturnNextCursor() {
+        User userOne = new User(1L, "testNameOne", "testEmailOne@gmail.com");
+        Item item = new Item(1L, "itemName", "itemDescription", true, userOne, null);
+        LocalDateTime start = LocalDateTime.parse("2030-01-01T10:00");
+        Booking first = new Booking(3L, start.plusHours(2), start.plusHours(3), item, userOne, BookingStatus.WAITING);
+        Booking second = new Booking(2L, start.plusHours(1), start.plusHours(2), item, userOne, BookingStatus.WAITING);
+
+        when(userRepository.findById(any())).thenReturn(Optional.of(userOne));
+        when(bookingRepository.findBookingsAfter(eq(BookingRole.BOOKER), anyLong(), eq(BookingState.ALL), any(), isNull(), eq(2)))
+                .thenReturn(List.of(BookingMapper.mapToDto(first, item), BookingMapper.mapToDto(second, item)));
+
+        BookingPage page = bookingService.findAllByUser(userOne.getId(), "ALL", null, 1);
+
+        assertEquals(1, page.getBookings().size());
+        assertEquals(first.getId(), page.getBookings().get(0).getId());
+        assertEquals(new BookingCursor(first.getStart(), first.getId()), BookingCursor.decode(page.getNextCursor()));
+    }
+
+    @Test
+    void findAllByOwner_whenCursorPagingAndLastPage_thenNoNextCursor() {
+        User userOne = new User(1L, "testNameOne", "testEmailOne@gmail.com");
+        Item item = new Item(1L, "itemName", "itemDescription", true, userOne, null);
+        LocalDateTime start = LocalDateTime.parse("2030-01-01T10:00");
+        Booking booking = new Booking(2L, start, start.plusHours(1), item, userOne, BookingStatus.WAITING);
+        BookingCursor cursor = new BookingCursor(start.plusHours(5), 7L);
+
+        when(userRepository.findById(any())).thenReturn(Optional.of(userOne));
+        when(bookingRepository.findBookingsAfter(eq(BookingRole.OWNER), anyLong(), eq(BookingState.FUTURE), any(), eq(cursor), eq(11)))
+                .thenReturn(List.of(BookingMapper.mapToDto(booking, item)));
+
+        BookingPage page = bookingService.findAllByOwner(userOne.getId(), "FUTURE", cursor.encode(), 10);
+
+        assertEquals(1, page.getBookings().size());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void findAllByOwnerCompact_whenCursorPagingAndMoreRows_thenCompactRowsAndNextCursor() {
+        User userOne = new User(1L, "testNameOne", "testEmailOne@gmail.com");
+        LocalDateTime start = LocalDateTime.parse("2030-01-01T10:00");
+        BookingCompactDto first = new BookingCompactDto(3L, start.plusHours(2), start.plusHours(3),
+                BookingStatus.WAITING, 2L, 1L, "itemName");
+        BookingCompactDto second = new BookingCompactDto(2L, start.plusHours(1), start.plusHours(2),
+                BookingStatus.WAITING, 2L, 1L, "itemName");
+
+        when(userRepository.findById(any())).thenReturn(Optional.of(userOne));
+        when(bookingRepository.findCompactBookingsAfter(eq(BookingRole.OWNER), anyLong(), eq(BookingState.ALL), any(),
+                isNull(), eq(2))).thenReturn(List.of(first, second));
+
+        BookingCompactPage page = bookingService.findAllByOwnerCompact(userOne.getId(), "ALL", null, 1);
+
+        assertEquals(List.of(first), page.getBookings());
+        assertEquals(new BookingCursor(first.getStart(), first.getId()), BookingCursor.decode(page.getNextCursor()));
+        verify(bookingRepository, never()).findBookingsAfter(any(), any(), any(), any(), any(), anyInt());
+    }
+
+    @Test
+    void findAllByUser_whenCursorInvalid_thenThrowException() {
+        User userOne = new User(1L, "testNameOne", "testEmailOne@gmail.com");
+
+        when(userRepository.findById(any())).thenReturn(Optional.of(userOne));
+
+        assertThrows(InvalidCursorException.class, () -> bookingService.findAllByUser(userOne.getId(), "ALL", "zzz", 10));
+    }
+
+    @Test
+    void addBookings_whenMixedEntries_thenSaveValidAndReportErrors() {
+        User userOne = new User(1L, "testNameOne", "testEmailOne@gmail.com");
+        User userTwo = new User(2L, "testNameTwo", "testEmailTwo@gmail.com");
+        Item item = new Item(1L, "itemName", "itemDescription", true, userOne, null);
+        Item unavailable = new Item(2L, "itemName", "itemDescription", false, userOne, null);
+        Item own = new Item(3L, "itemName", "itemDescription", true, userTwo, null);
+        LocalDateTime start = LocalDateTime.now().plusDays(1);
+        List<BookingDtoRequest> requests = List.of(
+                new BookingDtoRequest(null, item.getId(), start, start.plusHours(1)),
+                new BookingDtoRequest(null, unavailable.getId(), start, start.plusHours(1)),
+                new BookingDtoRequest(null, own.getId(), start, start.plusHours(1)),
+                new BookingDtoRequest(null, 99L, start, start.plusHours(1)),
+                new BookingDtoRequest(null, item.getId(), start.plusHours(1), start),
+                new BookingDtoRequest(null, item.getId(), start.plusHours(2), start.plusHours(3)));
+
+        when(userRepository.findById(any())).thenReturn(Optional.of(userTwo));
+        when(itemRepository.findAllWithOwnerByIdIn(any())).thenReturn(List.of(item, unavailable, own));
+        when(bookingRepository.saveAll(any())).thenAnswer(invocation -> {
+            List<Booking> bookings = invocation.getArgument(0);
+            long id = 10;
+            for (Booking booking : bookings) {
+                booking.setId(id++);
+            }
+            return bookings;
+        });
+
+        List<BookingBatchResult> results = bookingService.addBookings(userTwo.getId(), requests);
+
+        assertEquals(6, results.size());
+        assertEquals(10L, results.get(0).getBooking().getId());
+        assertNull(results.get(0).getError());
+        assertNull(results.get(1).getBooking());
+        assertNotNull(results.get(1).getError());
+        assertNotNull(results.get(2).getError());
+        assertNotNull(results.get(3).getError());
+        assertNotNull(results.get(4).getError());
+        assertEquals(11L, results.get(5).getBooking().getId());
+        assertEquals(5, results.get(5).getIndex());
+        verify(userRepository, times(1)).findById(any());
+        verify(itemRepository, times(1)).findAllWithOwnerByIdIn(any());
+        verify(itemRepository, never()).findById(any());
+    }
+
+    @Test
+    void addBookings_whenUserInvalid_thenThrowException() {
+        when(userRepository.findById(any())).thenReturn(Optional.empty());
+
+        assertThrows(UserNotFoundException.class, () -> bookingService.addBookings(1L, List.of()));
+    }
+
+    @Test
+    void patchBookings_whenMixedEntries_thenUpdateValidAndReportErrors() {
+        LocalDateTime start = LocalDateTime.now().plusDays(1);
+        User owner = new User(1L, "testNameOne", "testEmailOne@gmail.com");
+        when(userRepository.findById(any())).thenReturn(Optional.of(owner));
+        when(bookingRepository.findItemIdsByIdIn(any())).thenReturn(List.of(1L, 2L));
+        when(bookingRepository.updateStatusByIdInAndStatus(any(), any(), any())).thenReturn(1);
+        when(bookingRepository.findOwnershipByIdIn(any())).thenReturn(List.of(
+                new BookingOwnershipDto(1L, 1L, 1L, BookingStatus.WAITING, start, start.plusHours(2)),
+                new BookingOwnershipDto(2L, 1L, 1L, BookingStatus.WAITING, start.plusHours(1), start.plusHours(3)),
+                new BookingOwnershipDto(3L, 2L, 5L, BookingStatus.WAITING, start, start.plusHours(1)),
+                new BookingOwnershipDto(4L, 1L, 1L, BookingStatus.APPROVED, start.plusDays(1), start.plusDays(2))));
+
+        List<BookingBulkResult> results = bookingService.patchBookings(owner.getId(), List.of(1L, 2L, 3L, 4L, 99L), true);
+
+        assertEquals(5, results.size());
+        assertNull(results.get(0).getError());
+        assertEquals(BookingStatus.APPROVED, results.get(0).getStatus());
+        assertNotNull(results.get(1).getError());
+        assertEquals("Доступ запрещен!", results.get(2).getError());
+        assertEquals("Статус был установлен!", results.get(3).getError());
+        assertEquals("Запрос не найден 99", results.get(4).getError());
+        verify(bookingRepository, times(1)).findOwnershipByIdIn(any());
+        verify(bookingRepository, times(1))
+                .updateStatusByIdInAndStatus(List.of(1L), BookingStatus.WAITING, BookingStatus.APPROVED);
+    }
+
+    @Test
+    void patchBookings_whenRejected_thenApproved() {
+        LocalDateTime start = LocalDateTime.now().plusDays(1);
+        User owner = new User(1L, "testNameOne", "testEmailOne@gmail.com");
+        when(userRepository.findById(any())).thenReturn(Optional.of(owner));
+        when(bookingRepository.findItemIdsByIdIn(any())).thenReturn(List.of(1L));
+        when(bookingRepository.updateStatusByIdInAndStatus(any(), any(), any())).thenReturn(1);
+        when(bookingRepository.findOwnershipByIdIn(any())).thenReturn(List.of(
+                new BookingOwnershipDto(1L, 1L, 1L, BookingStatus.REJECTED, start, start.plusHours(2))));
+
+        List<BookingBulkResult> results = bookingService.patchBookings(owner.getId(), List.of(1L), true);
+
+        assertNull(results.get(0).getError());
+        assertEquals(BookingStatus.APPROVED, results.get(0).getStatus());
+        verify(bookingRepository, times(1))
+                .updateStatusByIdInAndStatus(List.of(1L), BookingStatus.REJECTED, BookingStatus.APPROVED);
+    }
+
+    @Test
+    void patchBookings_whenNothingToChange_thenNoUpdate() {
+        User owner = new User(1L, "testNameOne", "testEmailOne@gmail.com");
+        when(userRepository.findById(any())).thenReturn(Optional.of(owner));
+
+        List<BookingBulkResult> results = bookingService.patchBookings(owner.getId(), List.of(7L), false);
+
+        assertEquals("Запрос не найден 7", results.get(0).getError());
+        verify(bookingRepository, never()).updateStatusByIdInAndStatus(any(), any(), any());
+    }
+
+    @Test
+    void patchBookings_whenCanceledBeforeUpdate_thenReportCurrentStatus() {
+        LocalDateTime start = LocalDateTime.now().plusDays(1);
+        User owner = new User(1L, "testNameOne", "testEmailOne@gmail.com");
+        when(userRepository.findById(any())).thenReturn(Optional.of(owner));
+        when(bookingRepository.findItemIdsByIdIn(any())).thenReturn(List.of(1L));
+        when(bookingRepository.findOwnershipByIdIn(any())).thenReturn(
+                List.of(new BookingOwnershipDto(1L, 1L, 1L, BookingStatus.WAITING, start, start.plusHours(1))),
+                List.of(new BookingOwnershipDto(1L, 1L, 1L, BookingStatus.CANCELED, start, start.plusHours(1))));
+        when(bookingRepository.updateStatusByIdInAndStatus(any(), any(), any())).thenReturn(0);
+
+        List<BookingBulkResult> results = bookingService.patchBookings(owner.getId(), List.of(1L), true);
+
+        assertEquals(BookingStatus.CANCELED, results.get(0).getStatus());
+        assertNotNull(results.get(0).getError());
+    }
+
+    @Test
+    void getStatsByOwner_whenUserValid_thenReturnCounts() {
+        BookingStatsDto stats = new BookingStatsDto(3L, 1L, 1L, 1L, 0L, 0L);
+        when(userRepository.findById(any())).thenReturn(Optional.of(new User(1L, "name", "email@gmail.com")));
+        when(bookingRepository.countBookings(eq(BookingRole.OWNER), anyLong(), any())).thenReturn(stats);
+
+        assertEquals(stats, bookingService.getStatsByOwner(1L));
+    }
+
+    @Test
+    void getStatsByUser_whenUserInvalid_thenThrowException() {
+        when(userRepository.findById(any())).thenReturn(Optional.empty());
+
+        assertThrows(UserNotFoundException.class, () -> bookingService.getStatsByUser(1L));
+        verify(bookingRepository, never()).countBookings(any(), any(), any());
+    }
+}
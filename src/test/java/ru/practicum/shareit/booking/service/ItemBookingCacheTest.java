@@ -0,0 +1,162 @@
+package ru.practicum.shareit.booking.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import ru.practicum.shareit.booking.dto.BookingDtoItem;
+import ru.practicum.shareit.booking.dto.LastNextBookingDto;
+import ru.practicum.shareit.booking.storage.BookingRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ItemBookingCacheTest {
+    private final LocalDateTime base = LocalDateTime.parse("2030-01-01T10:00");
+    private BookingRepository bookingRepository;
+    private ItemBookingCache cache;
+
+    @BeforeEach
+    void beforeEach() {
+        bookingRepository = Mockito.mock(BookingRepository.class);
+        cache = new ItemBookingCache(bookingRepository, 2);
+    }
+
+    @Test
+    void get_whenBeforeNextStarts_thenServedWithoutReload() {
+        when(bookingRepository.findLastAndNextBookings(any(), any()))
+                .thenReturn(Map.of(1L, lastNext(1L, booking(1L, 0), booking(2L, 2))));
+
+        assertLastNext(cache.get(1L, base.plusHours(1)), 1L, 2L);
+        assertLastNext(cache.get(1L, base.plusMinutes(90)), 1L, 2L);
+
+        verify(bookingRepository, times(1)).findLastAndNextBookings(any(), any());
+    }
+
+    @Test
+    void get_whenNextStarted_thenReloaded() {
+        when(bookingRepository.findLastAndNextBookings(any(), eq(base.plusHours(1))))
+                .thenReturn(Map.of(1L, lastNext(1L, booking(1L, 0), booking(2L, 2))));
+        when(bookingRepository.findLastAndNextBookings(any(), eq(base.plusHours(3))))
+                .thenReturn(Map.of(1L, lastNext(1L, booking(2L, 2), null)));
+
+        assertLastNext(cache.get(1L, base.plusHours(1)), 1L, 2L);
+        assertLastNext(cache.get(1L, base.plusHours(3)), 2L, null);
+
+        verify(bookingRepository, times(2)).findLastAndNextBookings(any(), any());
+    }
+
+    @Test
+    void get_whenNoBookings_thenEmptyWindowCached() {
+        assertLastNext(cache.get(1L, base), null, null);
+        assertLastNext(cache.get(1L, base.plusDays(1)), null, null);
+
+        verify(bookingRepository, times(1)).findLastAndNextBookings(any(), any());
+    }
+
+    @Test
+    void getAll_whenSomeItemsCached_thenLoadsOnlyMissing() {
+        when(bookingRepository.findLastAndNextBookings(eq(List.of(1L)), any()))
+                .thenReturn(Map.of(1L, lastNext(1L, null, booking(1L, 1))));
+        cache.get(1L, base);
+
+        when(bookingRepository.findLastAndNextBookings(eq(List.of(2L)), any()))
+                .thenReturn(Map.of(2L, lastNext(2L, null, booking(2L, 1))));
+        Map<Long, LastNextBookingDto> result = cache.getAll(List.of(1L, 2L), base);
+
+        assertEquals(1L, result.get(1L).getNextBooking().getId());
+        assertEquals(2L, result.get(2L).getNextBooking().getId());
+        verify(bookingRepository, times(1)).findLastAndNextBookings(eq(List.of(2L)), any());
+    }
+
+    @Test
+    void invalidate_whenCalled_thenOnlyThatItemReloaded() {
+        when(bookingRepository.findLastAndNextBookings(any(), any()))
+                .thenReturn(Map.of(1L, lastNext(1L, null, booking(1L, 1))));
+        cache.getAll(List.of(1L, 2L), base);
+
+        when(bookingRepository.findLastAndNextBookings(any(), any()))
+                .thenReturn(Map.of(1L, lastNext(1L, null, booking(3L, 1))));
+        assertEquals(1L, cache.get(1L, base).getNextBooking().getId());
+        cache.invalidate(1L);
+        cache.invalidate(5L);
+
+        assertEquals(3L, cache.getAll(List.of(1L, 2L), base).get(1L).getNextBooking().getId());
+        verify(bookingRepository, times(1)).findLastAndNextBookings(eq(List.of(1L)), any());
+    }
+
+    @Test
+    void invalidate_whenCommittedDuringLoad_thenLoadedWindowNotCached() {
+        when(bookingRepository.findLastAndNextBookings(any(), any())).thenAnswer(invocation -> {
+            cache.invalidate(1L);
+            return Map.of(1L, lastNext(1L, null, booking(1L, 1)));
+        }).thenReturn(Map.of(1L, lastNext(1L, null, booking(2L, 1))));
+
+        assertEquals(1L, cache.get(1L, base).getNextBooking().getId());
+
+        assertEquals(2L, cache.get(1L, base).getNextBooking().getId());
+    }
+
+    @Test
+    void lookup_whenCompleted_thenServedFromCacheWithoutRepository() {
+        ItemBookingCache.Lookup miss = cache.lookup(1L, base);
+        assertNull(miss.getCached());
+        miss.complete(booking(1L, -1), booking(2L, 2));
+
+        ItemBookingCache.Lookup hit = cache.lookup(1L, base.plusHours(1));
+        assertLastNext(hit.getCached(), 1L, 2L);
+        assertLastNext(cache.get(1L, base.plusHours(1)), 1L, 2L);
+        assertNull(cache.lookup(1L, base.plusHours(2)).getCached());
+        verify(bookingRepository, Mockito.never()).findLastAndNextBookings(any(), any());
+    }
+
+    @Test
+    void lookup_whenInvalidatedBeforeComplete_thenLoadedWindowNotCached() {
+        ItemBookingCache.Lookup miss = cache.lookup(1L, base);
+        cache.invalidate(1L);
+        miss.complete(null, booking(1L, 1));
+
+        assertNull(cache.lookup(1L, base).getCached());
+    }
+
+    @Test
+    void get_whenMoreItemsThanLimit_thenEvicted() {
+        cache.get(1L, base);
+        cache.get(2L, base);
+        cache.get(3L, base);
+        cache.get(1L, base);
+        cache.get(2L, base);
+        cache.get(3L, base);
+
+        verify(bookingRepository, Mockito.atLeast(4)).findLastAndNextBookings(any(), any());
+    }
+
+    private void assertLastNext(LastNextBookingDto lastNext, Long lastId, Long nextId) {
+        if (lastId == null) {
+            assertNull(lastNext.getLastBooking());
+        } else {
+            assertEquals(lastId, lastNext.getLastBooking().getId());
+        }
+        if (nextId == null) {
+            assertNull(lastNext.getNextBooking());
+        } else {
+            assertEquals(nextId, lastNext.getNextBooking().getId());
+        }
+    }
+
+    private LastNextBookingDto lastNext(Long itemId, BookingDtoItem last, BookingDtoItem next) {
+        return new LastNextBookingDto(itemId, last, next);
+    }
+
+    private BookingDtoItem booking(Long id, int startHour) {
+        return new BookingDtoItem(id, 2L, base.plusHours(startHour), base.plusHours(startHour + 1));
+    }
+}
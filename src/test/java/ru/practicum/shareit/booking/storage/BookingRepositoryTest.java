@@ -1,22 +1,41 @@
 package ru.practicum.shareit.booking.storage;
 
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.test.annotation.DirtiesContext;
+import ru.practicum.shareit.OffsetPageRequest;
+import ru.practicum.shareit.booking.dto.BookingCompactDto;
+import ru.practicum.shareit.booking.dto.BookingDto;
+import ru.practicum.shareit.booking.dto.BookingOwnershipDto;
+import ru.practicum.shareit.booking.dto.BookingStatsDto;
+import ru.practicum.shareit.booking.dto.LastNextBookingDto;
+import ru.practicum.shareit.booking.model.ArchivedBooking;
 import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.item.dto.ItemPeriodDto;
 import ru.practicum.shareit.item.model.Item;
 import ru.practicum.shareit.item.storage.ItemRepository;
+import ru.practicum.shareit.request.model.ItemRequest;
+import ru.practicum.shareit.request.storage.ItemRequestRepository;
 import ru.practicum.shareit.user.model.User;
 import ru.practicum.shareit.user.storage.UserRepository;
 
+import javax.persistence.EntityManagerFactory;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 
-@DataJpaTest
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
 @DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
 class BookingRepositoryTest {
     @Autowired
@@ -25,6 +44,14 @@ class BookingRepositoryTest {
     private UserRepository userRepository;
     @Autowired
     private ItemRepository itemRepository;
+    @Autowired
+    private ItemRequestRepository itemRequestRepository;
+    @Autowired
+    private BookingArchiveRepository bookingArchiveRepository;
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
 
 
     @Test
@@ -43,10 +70,294 @@ class BookingRepositoryTest {
 
         bookingRepository.save(booking);
 
-        List<Booking> bookings = bookingRepository.findAllByBookerIdAndStatusOrderByStartDesc(
-                booker.getId(), BookingStatus.WAITING, PageRequest.of(0, 2));
-        assertThat(bookings).hasSize(1).contains(booking);
+        List<BookingDto> bookings = bookingRepository.findBookings(
+                BookingRole.BOOKER, booker.getId(), BookingState.WAITING, LocalDateTime.now(), PageRequest.of(0, 2));
+        assertThat(bookings).extracting(BookingDto::getId).containsExactly(booking.getId());
+    }
+
+    @Test
+    void findPageAfter_whenCursorGiven_thenContinueAfterCursor() {
+        LocalDateTime start = LocalDateTime.parse("2023-05-01T01:00");
+        User owner = userRepository.save(new User(null, "owner", "owner@gmail.com"));
+        User booker = userRepository.save(new User(null, "booker", "boker@gmail.com"));
+        Item item = itemRepository.save(new Item(null, "item", "item description", true, owner, null));
+        Booking first = bookingRepository.save(new Booking(null, start, start.plusHours(1), item, booker, BookingStatus.WAITING));
+        Booking second = bookingRepository.save(new Booking(null, start, start.plusHours(2), item, booker, BookingStatus.WAITING));
+        Booking third = bookingRepository.save(new Booking(null, start.plusDays(1), start.plusDays(2), item, booker, BookingStatus.WAITING));
+
+        List<BookingDto> firstPage = bookingRepository.findBookingsAfter(
+                BookingRole.OWNER, owner.getId(), BookingState.ALL, LocalDateTime.now(), null, 2);
+        BookingDto last = firstPage.get(firstPage.size() - 1);
+        List<BookingDto> secondPage = bookingRepository.findBookingsAfter(
+                BookingRole.OWNER, owner.getId(), BookingState.ALL, LocalDateTime.now(),
+                new BookingCursor(last.getStart(), last.getId()), 2);
+
+        assertThat(firstPage).extracting(BookingDto::getId).containsExactly(third.getId(), second.getId());
+        assertThat(secondPage).extracting(BookingDto::getId).containsExactly(first.getId());
+    }
+
+    @Test
+    void findBookings_whenStateGiven_thenFilterByState() {
+        LocalDateTime now = LocalDateTime.now();
+        User owner = userRepository.save(new User(null, "owner", "owner@gmail.com"));
+        User booker = userRepository.save(new User(null, "booker", "boker@gmail.com"));
+        Item item = itemRepository.save(new Item(null, "item", "item description", true, owner, null));
+        Booking past = bookingRepository.save(
+                new Booking(null, now.minusDays(2), now.minusDays(1), item, booker, BookingStatus.APPROVED));
+        Booking current = bookingRepository.save(
+                new Booking(null, now.minusHours(1), now.plusHours(1), item, booker, BookingStatus.APPROVED));
+        Booking future = bookingRepository.save(
+                new Booking(null, now.plusDays(1), now.plusDays(2), item, booker, BookingStatus.REJECTED));
+
+        assertThat(bookingRepository.findBookings(BookingRole.OWNER, owner.getId(), BookingState.ALL, now, Pageable.unpaged()))
+                .extracting(BookingDto::getId).containsExactly(future.getId(), current.getId(), past.getId());
+        assertThat(bookingRepository.findBookings(BookingRole.OWNER, owner.getId(), BookingState.PAST, now, Pageable.unpaged()))
+                .extracting(BookingDto::getId).containsExactly(past.getId());
+        assertThat(bookingRepository.findBookings(BookingRole.OWNER, owner.getId(), BookingState.CURRENT, now, Pageable.unpaged()))
+                .extracting(BookingDto::getId).containsExactly(current.getId());
+        assertThat(bookingRepository.findBookings(BookingRole.BOOKER, booker.getId(), BookingState.FUTURE, now, Pageable.unpaged()))
+                .extracting(BookingDto::getId).containsExactly(future.getId());
+        assertThat(bookingRepository.findBookings(BookingRole.BOOKER, booker.getId(), BookingState.REJECTED, now, PageRequest.of(0, 1)))
+                .extracting(BookingDto::getId).containsExactly(future.getId());
+        assertThat(bookingRepository.findBookings(BookingRole.BOOKER, owner.getId(), BookingState.ALL, now, Pageable.unpaged()))
+                .isEmpty();
     }
 
+    @Test
+    void findBookings_whenPageHasManyItems_thenSingleStatement() {
+        LocalDateTime start = LocalDateTime.now().plusDays(1);
+        User booker = userRepository.save(new User(null, "booker", "boker@gmail.com"));
+        User requester = userRepository.save(new User(null, "requester", "requester@gmail.com"));
+        for (int i = 0; i < 10; i++) {
+            User owner = userRepository.save(new User(null, "owner" + i, "owner" + i + "@gmail.com"));
+            ItemRequest request = itemRequestRepository.save(new ItemRequest(null, "request" + i, requester, start));
+            Item item = itemRepository.save(new Item(null, "item" + i, "item description", true, owner, request));
+            bookingRepository.save(new Booking(null, start.plusDays(i), start.plusDays(i + 1), item, booker, BookingStatus.WAITING));
+        }
+        entityManager.flush();
+        entityManager.clear();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        List<BookingDto> bookings = bookingRepository.findBookings(
+                BookingRole.BOOKER, booker.getId(), BookingState.ALL, LocalDateTime.now(), PageRequest.of(0, 10));
+
+        assertThat(bookings).hasSize(10);
+        assertThat(bookings.get(0).getItem().getOwner().getName()).isEqualTo("owner9");
+        assertThat(bookings.get(0).getItem().getRequest().getRequester().getId()).isEqualTo(requester.getId());
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    void saveAll_whenManyBookings_thenInsertedInBatches() {
+        LocalDateTime start = LocalDateTime.now().plusDays(1);
+        User owner = userRepository.save(new User(null, "owner", "owner@gmail.com"));
+        User booker = userRepository.save(new User(null, "booker", "boker@gmail.com"));
+        Item item = itemRepository.save(new Item(null, "item", "item description", true, owner, null));
+        entityManager.flush();
+        List<Booking> bookings = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            bookings.add(new Booking(null, start.plusDays(i), start.plusDays(i + 1), item, booker, BookingStatus.WAITING));
+        }
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        bookingRepository.saveAll(bookings);
+        entityManager.flush();
+
+        assertThat(bookings).extracting(Booking::getId).doesNotContainNull().doesNotHaveDuplicates();
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(120);
+        // два блока идентификаторов из bookings_seq и один оператор вставки на все пакеты
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(3);
+    }
+
+    @Test
+    void updateStatusByIdInAndStatus_whenStatusDiffers_thenUpdateOnlyMatchingRows() {
+        LocalDateTime start = LocalDateTime.parse("2030-05-01T01:00");
+        User owner = userRepository.save(new User(null, "owner", "owner@gmail.com"));
+        User booker = userRepository.save(new User(null, "booker", "boker@gmail.com"));
+        Item item = itemRepository.save(new Item(null, "item", "item description", true, owner, null));
+        Booking waiting = bookingRepository.save(
+                new Booking(null, start, start.plusHours(1), item, booker, BookingStatus.WAITING));
+        Booking approved = bookingRepository.save(
+                new Booking(null, start.plusDays(1), start.plusDays(2), item, booker, BookingStatus.APPROVED));
+
+        List<BookingOwnershipDto> ownership = bookingRepository.findOwnershipByIdIn(
+                List.of(waiting.getId(), approved.getId()));
+        int updated = bookingRepository.updateStatusByIdInAndStatus(
+                List.of(waiting.getId(), approved.getId()), BookingStatus.WAITING, BookingStatus.APPROVED);
+
+        assertThat(ownership).extracting(BookingOwnershipDto::getOwnerId).containsOnly(owner.getId());
+        assertThat(ownership).extracting(BookingOwnershipDto::getItemId).containsOnly(item.getId());
+        assertThat(updated).isEqualTo(1);
+        assertThat(bookingRepository.findById(waiting.getId()).orElseThrow().getStatus())
+                .isEqualTo(BookingStatus.APPROVED);
+    }
 
-}
\ No newline at end of file
+    @Test
+    void streamBusyPeriods_whenWindowGiven_thenApprovedOverlappingInStartOrder() {
+        LocalDateTime start = LocalDateTime.parse("2030-05-01T00:00");
+        User owner = userRepository.save(new User(null, "owner", "owner@gmail.com"));
+        User booker = userRepository.save(new User(null, "booker", "boker@gmail.com"));
+        Item item = itemRepository.save(new Item(null, "item", "item description", true, owner, null));
+        bookingRepository.save(new Booking(null, start.plusHours(5), start.plusHours(6), item, booker, BookingStatus.APPROVED));
+        bookingRepository.save(new Booking(null, start.minusHours(1), start.plusHours(1), item, booker, BookingStatus.APPROVED));
+        bookingRepository.save(new Booking(null, start.plusHours(2), start.plusHours(3), item, booker, BookingStatus.REJECTED));
+        bookingRepository.save(new Booking(null, start.plusDays(2), start.plusDays(3), item, booker, BookingStatus.APPROVED));
+
+        try (Stream<ItemPeriodDto> periods = bookingRepository.streamBusyPeriods(item.getId(), start, start.plusDays(1))) {
+            assertThat(periods.map(ItemPeriodDto::getStart))
+                    .containsExactly(start.minusHours(1), start.plusHours(5));
+        }
+    }
+
+    @Test
+    void countBookings_whenBookingsInAllStates_thenCountEachStateInOneStatement() {
+        LocalDateTime now = LocalDateTime.now();
+        User owner = userRepository.save(new User(null, "owner", "owner@gmail.com"));
+        User booker = userRepository.save(new User(null, "booker", "boker@gmail.com"));
+        Item item = itemRepository.save(new Item(null, "item", "item description", true, owner, null));
+        bookingRepository.save(new Booking(null, now.minusDays(2), now.minusDays(1), item, booker, BookingStatus.APPROVED));
+        bookingRepository.save(new Booking(null, now.minusHours(1), now.plusHours(1), item, booker, BookingStatus.APPROVED));
+        bookingRepository.save(new Booking(null, now.plusDays(1), now.plusDays(2), item, booker, BookingStatus.WAITING));
+        bookingRepository.save(new Booking(null, now.plusDays(3), now.plusDays(4), item, booker, BookingStatus.REJECTED));
+        entityManager.flush();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        BookingStatsDto ownerStats = bookingRepository.countBookings(BookingRole.OWNER, owner.getId(), now);
+
+        assertThat(ownerStats).isEqualTo(new BookingStatsDto(4L, 1L, 1L, 2L, 1L, 1L));
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(bookingRepository.countBookings(BookingRole.BOOKER, booker.getId(), now)).isEqualTo(ownerStats);
+        assertThat(bookingRepository.countBookings(BookingRole.BOOKER, owner.getId(), now))
+                .isEqualTo(new BookingStatsDto(0L, 0L, 0L, 0L, 0L, 0L));
+    }
+
+    @Test
+    void findBookings_whenPageReachesArchive_thenMergeByStart() {
+        LocalDateTime now = LocalDateTime.now();
+        User owner = userRepository.save(new User(null, "owner", "owner@gmail.com"));
+        User booker = userRepository.save(new User(null, "booker", "boker@gmail.com"));
+        Item item = itemRepository.save(new Item(null, "item", "item description", true, owner, null));
+        Booking recent = bookingRepository.save(
+                new Booking(null, now.minusDays(2), now.minusDays(1), item, booker, BookingStatus.APPROVED));
+        Booking longOne = bookingRepository.save(
+                new Booking(null, now.minusYears(3), now.minusDays(3), item, booker, BookingStatus.APPROVED));
+        ArchivedBooking archivedNew = bookingArchiveRepository.save(new ArchivedBooking(
+                1000L, now.minusYears(2), now.minusYears(2).plusDays(1), item, booker, BookingStatus.APPROVED));
+        ArchivedBooking archivedOld = bookingArchiveRepository.save(new ArchivedBooking(
+                1001L, now.minusYears(4), now.minusYears(4).plusDays(1), item, booker, BookingStatus.REJECTED));
+
+        assertThat(bookingRepository.findBookings(BookingRole.BOOKER, booker.getId(), BookingState.PAST, now, PageRequest.of(0, 2)))
+                .extracting(BookingDto::getId).containsExactly(recent.getId(), archivedNew.getId());
+        assertThat(bookingRepository.findBookings(BookingRole.OWNER, owner.getId(), BookingState.ALL, now, PageRequest.of(1, 2)))
+                .extracting(BookingDto::getId).containsExactly(longOne.getId(), archivedOld.getId());
+        assertThat(bookingRepository.findBookings(BookingRole.OWNER, owner.getId(), BookingState.ALL, now,
+                OffsetPageRequest.of(1, 2)))
+                .extracting(BookingDto::getId).containsExactly(archivedNew.getId(), longOne.getId());
+        assertThat(bookingRepository.findBookings(BookingRole.OWNER, owner.getId(), BookingState.ALL, now,
+                OffsetPageRequest.of(3, 2)))
+                .extracting(BookingDto::getId).containsExactly(archivedOld.getId());
+        assertThat(bookingRepository.findBookings(BookingRole.OWNER, owner.getId(), BookingState.REJECTED, now, Pageable.unpaged()))
+                .extracting(BookingDto::getId).containsExactly(archivedOld.getId());
+        assertThat(bookingRepository.findBookings(BookingRole.OWNER, owner.getId(), BookingState.CURRENT, now, Pageable.unpaged()))
+                .isEmpty();
+
+        List<BookingDto> firstPage = bookingRepository.findBookingsAfter(
+                BookingRole.BOOKER, booker.getId(), BookingState.ALL, now, null, 3);
+        BookingDto last = firstPage.get(firstPage.size() - 1);
+        List<BookingDto> secondPage = bookingRepository.findBookingsAfter(
+                BookingRole.BOOKER, booker.getId(), BookingState.ALL, now, new BookingCursor(last.getStart(), last.getId()), 3);
+        assertThat(firstPage).extracting(BookingDto::getId)
+                .containsExactly(recent.getId(), archivedNew.getId(), longOne.getId());
+        assertThat(secondPage).extracting(BookingDto::getId).containsExactly(archivedOld.getId());
+        assertThat(bookingRepository.countBookings(BookingRole.BOOKER, booker.getId(), now))
+                .isEqualTo(new BookingStatsDto(4L, 0L, 4L, 0L, 0L, 1L));
+        assertThat(bookingRepository.countBookings(BookingRole.OWNER, owner.getId(), now))
+                .isEqualTo(new BookingStatsDto(4L, 0L, 4L, 0L, 0L, 1L));
+    }
+
+    @Test
+    void findCompactBookings_whenPageReachesArchive_thenCompactRowsMergedByStart() {
+        LocalDateTime now = LocalDateTime.now();
+        User owner = userRepository.save(new User(null, "owner", "owner@gmail.com"));
+        User booker = userRepository.save(new User(null, "booker", "boker@gmail.com"));
+        Item item = itemRepository.save(new Item(null, "item", "item description", true, owner, null));
+        Booking recent = bookingRepository.save(
+                new Booking(null, now.minusDays(2), now.minusDays(1), item, booker, BookingStatus.APPROVED));
+        ArchivedBooking archived = bookingArchiveRepository.save(new ArchivedBooking(
+                1000L, now.minusYears(2), now.minusYears(2).plusDays(1), item, booker, BookingStatus.REJECTED));
+        entityManager.flush();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        List<BookingCompactDto> ownerPage = bookingRepository.findCompactBookings(
+                BookingRole.OWNER, owner.getId(), BookingState.ALL, now, PageRequest.of(0, 1));
+
+        assertThat(ownerPage)
+                .extracting(BookingCompactDto::getId, BookingCompactDto::getStatus, BookingCompactDto::getBookerId,
+                        BookingCompactDto::getItemId, BookingCompactDto::getItemName)
+                .containsExactly(tuple(recent.getId(), BookingStatus.APPROVED, booker.getId(), item.getId(), "item"));
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+        assertThat(bookingRepository.findCompactBookings(BookingRole.BOOKER, booker.getId(), BookingState.PAST, now,
+                OffsetPageRequest.of(1, 2)))
+                .extracting(BookingCompactDto::getId).containsExactly(archived.getId());
+        assertThat(bookingRepository.findCompactBookingsAfter(BookingRole.BOOKER, booker.getId(), BookingState.ALL,
+                now, new BookingCursor(ownerPage.get(0).getStart(), recent.getId()), 2))
+                .extracting(BookingCompactDto::getId, BookingCompactDto::getItemName)
+                .containsExactly(tuple(archived.getId(), "item"));
+    }
+
+    @Test
+    void findBookings_whenPageEndsBeforeArchive_thenArchiveNotQueried() {
+        LocalDateTime now = LocalDateTime.now();
+        User owner = userRepository.save(new User(null, "owner", "owner@gmail.com"));
+        User booker = userRepository.save(new User(null, "booker", "boker@gmail.com"));
+        Item item = itemRepository.save(new Item(null, "item", "item description", true, owner, null));
+        Booking first = bookingRepository.save(
+                new Booking(null, now.minusDays(2), now.minusDays(1), item, booker, BookingStatus.APPROVED));
+        bookingArchiveRepository.save(new ArchivedBooking(
+                1000L, now.minusYears(2), now.minusYears(2).plusDays(1), item, booker, BookingStatus.APPROVED));
+        entityManager.flush();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        assertThat(bookingRepository.findBookings(BookingRole.BOOKER, booker.getId(), BookingState.PAST, now, PageRequest.of(0, 1)))
+                .extracting(BookingDto::getId).containsExactly(first.getId());
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void findLastAndNextBookings_whenManyBookingsPerItem_thenOneLastAndOneNextPerItem() {
+        LocalDateTime now = LocalDateTime.now();
+        User owner = userRepository.save(new User(null, "owner", "owner@gmail.com"));
+        User booker = userRepository.save(new User(null, "booker", "boker@gmail.com"));
+        Item first = itemRepository.save(new Item(null, "first", "item description", true, owner, null));
+        Item second = itemRepository.save(new Item(null, "second", "item description", true, owner, null));
+        Item third = itemRepository.save(new Item(null, "third", "item description", true, owner, null));
+        bookingRepository.save(new Booking(null, now.minusDays(5), now.minusDays(4), first, booker, BookingStatus.APPROVED));
+        Booking firstLast = bookingRepository.save(
+                new Booking(null, now.minusDays(2), now.minusDays(1), first, booker, BookingStatus.APPROVED));
+        bookingRepository.save(new Booking(null, now.minusHours(1), now.plusHours(1), first, booker, BookingStatus.REJECTED));
+        Booking firstNext = bookingRepository.save(
+                new Booking(null, now.plusDays(1), now.plusDays(2), first, booker, BookingStatus.APPROVED));
+        bookingRepository.save(new Booking(null, now.plusDays(3), now.plusDays(4), first, booker, BookingStatus.APPROVED));
+        Booking secondNext = bookingRepository.save(
+                new Booking(null, now.plusDays(1), now.plusDays(2), second, booker, BookingStatus.APPROVED));
+        ArchivedBooking secondArchived = bookingArchiveRepository.save(new ArchivedBooking(
+                1000L, now.minusYears(2), now.minusYears(2).plusDays(1), second, booker, BookingStatus.APPROVED));
+
+        Map<Long, LastNextBookingDto> lastNext = bookingRepository.findLastAndNextBookings(
+                List.of(first.getId(), second.getId(), third.getId()), now);
+
+        assertThat(lastNext.get(first.getId()).getLastBooking().getId()).isEqualTo(firstLast.getId());
+        assertThat(lastNext.get(first.getId()).getLastBooking().getBookerId()).isEqualTo(booker.getId());
+        assertThat(lastNext.get(first.getId()).getNextBooking().getId()).isEqualTo(firstNext.getId());
+        assertThat(lastNext.get(second.getId()).getLastBooking().getId()).isEqualTo(secondArchived.getId());
+        assertThat(lastNext.get(second.getId()).getNextBooking().getId()).isEqualTo(secondNext.getId());
+        assertThat(lastNext).doesNotContainKey(third.getId());
+    }
+}
@@ -13,10 +13,17 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit.jupiter.web.SpringJUnitWebConfig;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import ru.practicum.shareit.StatsAccess;
 import ru.practicum.shareit.booking.dto.BookingDtoItem;
+import ru.practicum.shareit.handler.ErrorHandler;
 import ru.practicum.shareit.item.dto.CommentDto;
 import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.dto.CommentPage;
+import ru.practicum.shareit.item.dto.ItemPage;
+import ru.practicum.shareit.item.dto.ItemPeriodDto;
+import ru.practicum.shareit.item.dto.ItemSearchCacheStats;
 import ru.practicum.shareit.item.exceptions.ItemNotFoundException;
 import ru.practicum.shareit.item.service.ItemService;
 import ru.practicum.shareit.item.storage.ItemRepository;
@@ -29,15 +36,20 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 import static org.hamcrest.Matchers.is;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
-@WebMvcTest(ItemController.class)
-@SpringJUnitWebConfig(ItemController.class)
+@WebMvcTest(controllers = ItemController.class, properties = "shareit.stats.admin-ids=1")
+@SpringJUnitWebConfig({ItemController.class, StatsAccess.class, ErrorHandler.class})
 @AutoConfigureMockMvc
 @ExtendWith(MockitoExtension.class)
 class ItemControllerTest {
@@ -210,6 +222,7 @@ class ItemControllerTest {
     void getItemById_whenUserIdDoesNotExists_thenReturnUserNotFoundException() {
         Mockito.when(userService.getUserById(anyLong())).thenThrow(UserNotFoundException.class);
         Mockito.when(itemService.getItemById(anyLong(),anyLong())).thenThrow(ItemNotFoundException.class);
+        Mockito.when(itemService.getAllItems(anyLong(), anyBoolean(), any())).thenReturn(new ArrayList<>());
         mockMvc.perform(MockMvcRequestBuilders.get("/items/", 1L)
                         .header("X-Sharer-User-Id", 1000L))
                 .andExpect(status().isOk());
@@ -226,31 +239,177 @@ class ItemControllerTest {
                 .build();
         List<ItemDto> itemDtoList = new ArrayList<>();
         itemDtoList.add(itemDto);
-        Mockito.when(itemService.getAllItems(anyLong())).thenReturn(itemDtoList);
+        Mockito.when(itemService.getAllItems(anyLong(), (String) isNull(), anyInt(), anyBoolean(), any()))
+                .thenReturn(new ItemPage(itemDtoList, "next"));
         mockMvc.perform(MockMvcRequestBuilders.get("/items/", 1L)
+                        .header("X-Sharer-User-Id", 1L)
+                        .param("size", "10"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id", is(itemDto.getId()), Long.class))
+                .andExpect(header().string(ItemController.NEXT_CURSOR_HEADER, "next"));
+    }
+
+    @SneakyThrows
+    @Test
+    void findAllItems_whenNoPagingParams_thenAllItems() {
+        Mockito.when(itemService.getAllItems(1L, false, null)).thenReturn(List.of(itemDto));
+        mockMvc.perform(MockMvcRequestBuilders.get("/items")
                         .header("X-Sharer-User-Id", 1L))
-                .andExpect(status().isOk());
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id", is(itemDto.getId()), Long.class))
+                .andExpect(header().doesNotExist(ItemController.NEXT_CURSOR_HEADER));
+        Mockito.verify(itemService, Mockito.never())
+                .getAllItems(anyLong(), (String) any(), anyInt(), anyBoolean(), any());
+    }
+
+    @SneakyThrows
+    @Test
+    void findAllItems_whenFromSet_thenOffsetPage() {
+        Mockito.when(itemService.getAllItems(1L, 20, 10, false, null)).thenReturn(List.of(itemDto));
+        mockMvc.perform(MockMvcRequestBuilders.get("/items")
+                        .header("X-Sharer-User-Id", 1L)
+                        .param("from", "20"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id", is(itemDto.getId()), Long.class))
+                .andExpect(header().doesNotExist(ItemController.NEXT_CURSOR_HEADER));
     }
 
 
     @SneakyThrows
     @Test
     void findItemsBySearch_whenExists_thenReturnItems() {
-        when(itemService.getItemsBySearch(anyString())).thenReturn(List.of(itemDto));
+        when(itemService.getItemsBySearch(anyString(), (String) any(), anyInt(), anyBoolean(), any()))
+                .thenReturn(new ItemPage(List.of(itemDto), "next"));
         mockMvc.perform(MockMvcRequestBuilders.get("/items/search")
                         .header("X-Sharer-User-Id", 1L)
                         .content(mapper.writeValueAsString(itemDto))
                         .characterEncoding(StandardCharsets.UTF_8)
                         .contentType(MediaType.APPLICATION_JSON)
                         .param("text", "text")
+                        .param("size", "10")
                         .accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$[0].name", is(itemDto.getName()), String.class))
                 .andExpect(jsonPath("$[0].description", is(itemDto.getDescription()), String.class))
                 .andExpect(jsonPath("$[0].available", is(itemDto.getAvailable()), Boolean.class))
+                .andExpect(jsonPath("$[0].id", is(itemDto.getId()), Long.class))
+                .andExpect(header().string(ItemController.NEXT_CURSOR_HEADER, "next"));
+    }
+
+    @SneakyThrows
+    @Test
+    void getComments_whenMorePages_thenCursorHeader() {
+        CommentDto comment = new CommentDto(3L, "text", "author", LocalDateTime.now());
+        when(itemService.getComments(1L, null, 1)).thenReturn(new CommentPage(List.of(comment), "next"));
+        mockMvc.perform(MockMvcRequestBuilders.get("/items/1/comments")
+                        .param("size", "1")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id", is(3L), Long.class))
+                .andExpect(header().string(ItemController.NEXT_CURSOR_HEADER, "next"));
+    }
+
+    @SneakyThrows
+    @Test
+    void findItemsBySearch_whenIncludeComments_thenLatestPassed() {
+        when(itemService.getItemsBySearch("text", true, 3)).thenReturn(List.of(itemDto));
+        mockMvc.perform(MockMvcRequestBuilders.get("/items/search")
+                        .param("text", "text")
+                        .param("include", "comments")
+                        .param("latestComments", "3")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id", is(itemDto.getId()), Long.class));
+    }
+
+    @SneakyThrows
+    @Test
+    void findItemsBySearch_whenCursorSet_thenDefaultPageSize() {
+        when(itemService.getItemsBySearch("text", "abc", ItemController.DEFAULT_PAGE_SIZE, false, null))
+                .thenReturn(new ItemPage(List.of(itemDto), null));
+        mockMvc.perform(MockMvcRequestBuilders.get("/items/search")
+                        .param("text", "text")
+                        .param("cursor", "abc")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
                 .andExpect(jsonPath("$[0].id", is(itemDto.getId()), Long.class));
     }
 
+    @SneakyThrows
+    @Test
+    void findItemsBySearch_whenFromSet_thenOffsetPage() {
+        when(itemService.getItemsBySearch("text", 20, 10, false, null)).thenReturn(List.of(itemDto));
+        mockMvc.perform(MockMvcRequestBuilders.get("/items/search")
+                        .param("text", "text")
+                        .param("from", "20")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id", is(itemDto.getId()), Long.class))
+                .andExpect(header().doesNotExist(ItemController.NEXT_CURSOR_HEADER));
+    }
+
+    @SneakyThrows
+    @Test
+    void getSearchCacheStats_whenAdmin_thenStats() {
+        when(itemService.getSearchCacheStats()).thenReturn(ItemSearchCacheStats.builder()
+                .hits(3L)
+                .misses(1L)
+                .hitRate(0.75)
+                .entries(2)
+                .build());
+        mockMvc.perform(MockMvcRequestBuilders.get("/items/search/stats")
+                        .header("X-Sharer-User-Id", 1L)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.hits", is(3)));
+    }
+
+    @SneakyThrows
+    @Test
+    void getSearchCacheStats_whenNotAdmin_thenForbidden() {
+        mockMvc.perform(MockMvcRequestBuilders.get("/items/search/stats")
+                        .header("X-Sharer-User-Id", 2L)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isForbidden());
+        Mockito.verify(itemService, Mockito.never()).getSearchCacheStats();
+    }
+
+    @SneakyThrows
+    @Test
+    void suggestItemNames_whenPrefix_thenNames() {
+        when(itemService.suggestItemNames("дре", 5)).thenReturn(List.of("Дрель ударная", "Дрель"));
+        mockMvc.perform(MockMvcRequestBuilders.get("/items/suggest")
+                        .param("prefix", "дре")
+                        .param("size", "5")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0]", is("Дрель ударная")))
+                .andExpect(jsonPath("$[1]", is("Дрель")));
+    }
+
+    @SneakyThrows
+    @Test
+    void streamItemsBySearch_whenNdjsonAccepted_thenOneItemPerLine() {
+        doAnswer(invocation -> {
+            Consumer<ItemDto> consumer = invocation.getArgument(1);
+            consumer.accept(itemDto);
+            consumer.accept(itemDtoEnhanced);
+            return null;
+        }).when(itemService).streamItemsBySearch(eq("text"), any());
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/items/search")
+                        .param("text", "text")
+                        .accept(ItemController.NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(ItemController.NDJSON))
+                .andExpect(content().string(mapper.writeValueAsString(itemDto) + "\n"
+                        + mapper.writeValueAsString(itemDtoEnhanced) + "\n"));
+    }
+
     @SneakyThrows
     @Test
     void addComment_whenValid_thenReturnComment() {
@@ -279,4 +438,23 @@ class ItemControllerTest {
 
         verify(itemService, times(1)).addComment(anyLong(), anyLong(), any());
     }
-}
\ No newline at end of file
+
+    @SneakyThrows
+    @Test
+    void getAvailability_whenValid_thenReturnFreePeriods() {
+        LocalDateTime from = LocalDateTime.of(2030, 1, 1, 0, 0, 0);
+        LocalDateTime to = from.plusDays(1);
+        when(itemService.getAvailability(anyLong(), any(), any()))
+                .thenReturn(List.of(new ItemPeriodDto(from.plusHours(2), to)));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/items/1/availability")
+                        .param("from", "2030-01-01T00:00:00")
+                        .param("to", "2030-01-02T00:00:00")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].start", is("2030-01-01T02:00:00")))
+                .andExpect(jsonPath("$[0].end", is("2030-01-02T00:00:00")));
+
+        verify(itemService, times(1)).getAvailability(1L, from, to);
+    }
+}
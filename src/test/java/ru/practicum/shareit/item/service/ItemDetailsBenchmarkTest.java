@@ -0,0 +1,115 @@
+package ru.practicum.shareit.item.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.storage.BookingRepository;
+import ru.practicum.shareit.booking.storage.BookingStatus;
+import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.model.Comment;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.storage.CommentRepository;
+import ru.practicum.shareit.item.storage.ItemRepository;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.storage.UserRepository;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Число запросов и средняя задержка карточки предмета для владельца.
+ * Замер задержки помечен тегом benchmark и запускается только с профилем: mvn test -Pbenchmark.
+ */
+@Slf4j
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class ItemDetailsBenchmarkTest {
+    private static final int COMMENTS = 20;
+    private static final int PREVIEW = 10;
+    private static final int WARMUP = 2000;
+    private static final int ITERATIONS = 1000;
+
+    @Autowired
+    private ItemService itemService;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private ItemRepository itemRepository;
+    @Autowired
+    private BookingRepository bookingRepository;
+    @Autowired
+    private CommentRepository commentRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @AfterEach
+    void afterEach() {
+        commentRepository.deleteAll();
+        bookingRepository.deleteAll();
+        itemRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void getItemById_whenOwnerColdOrCached_thenAtMostTwoStatements() {
+        LocalDateTime now = LocalDateTime.now();
+        Item item = createItemWithHistory(now);
+        Long ownerId = item.getOwner().getId();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        statistics.clear();
+        ItemDto itemDto = itemService.getItemById(item.getId(), ownerId);
+        long statements = statistics.getPrepareStatementCount();
+        statistics.clear();
+        ItemDto cached = itemService.getItemById(item.getId(), ownerId);
+        long cachedStatements = statistics.getPrepareStatementCount();
+
+        assertEquals(PREVIEW, itemDto.getComments().size());
+        assertEquals("comment" + (COMMENTS - PREVIEW), itemDto.getComments().get(0).getText());
+        assertEquals("author" + (COMMENTS - 1), itemDto.getComments().get(PREVIEW - 1).getAuthorName());
+        assertTrue(itemDto.getLastBooking().getStart().isBefore(now));
+        assertTrue(itemDto.getNextBooking().getStart().isAfter(now));
+        assertTrue(statements <= 2, "statements: " + statements);
+        assertEquals(itemDto.getNextBooking().getId(), cached.getNextBooking().getId());
+        assertTrue(cachedStatements <= 2, "statements: " + cachedStatements);
+    }
+
+    @Test
+    @Tag("benchmark")
+    void getItemById_whenOwner_thenLogAverageLatency() {
+        Item item = createItemWithHistory(LocalDateTime.now());
+        Long ownerId = item.getOwner().getId();
+
+        for (int i = 0; i < WARMUP; i++) {
+            itemService.getItemById(item.getId(), ownerId);
+        }
+        long started = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            itemService.getItemById(item.getId(), ownerId);
+        }
+        long averageMicros = (System.nanoTime() - started) / ITERATIONS / 1000;
+        log.info("getItemById для владельца: в среднем {} мкс", averageMicros);
+    }
+
+    private Item createItemWithHistory(LocalDateTime now) {
+        User owner = userRepository.save(new User(null, "owner", "details-owner@gmail.com"));
+        Item item = itemRepository.save(new Item(null, "item", "description", true, owner, null));
+        for (int i = 0; i < COMMENTS; i++) {
+            User author = userRepository.save(new User(null, "author" + i, "details-author" + i + "@gmail.com"));
+            bookingRepository.save(new Booking(null, now.minusDays(i + 2), now.minusDays(i + 1), item, author,
+                    BookingStatus.APPROVED));
+            bookingRepository.save(new Booking(null, now.plusDays(i + 1), now.plusDays(i + 2), item, author,
+                    BookingStatus.APPROVED));
+            commentRepository.save(new Comment(null, "comment" + i, item, author, now.minusHours(COMMENTS - i)));
+        }
+        return item;
+    }
+}
@@ -0,0 +1,80 @@
+package ru.practicum.shareit.item.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.practicum.shareit.item.dto.ItemSearchCacheStats;
+import ru.practicum.shareit.item.dto.ItemTextDto;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ItemSearchCacheTest {
+    private final AtomicInteger loads = new AtomicInteger();
+    private final Supplier<List<Long>> loader = () -> List.of((long) loads.incrementAndGet());
+    private ItemSearchCache cache;
+
+    @BeforeEach
+    void beforeEach() {
+        cache = new ItemSearchCache(2);
+    }
+
+    @Test
+    void get_whenSameQueryInOtherFormAndOrder_thenServedFromCache() {
+        cache.get("Дрель ударная", "from=0", 10, loader);
+        cache.get("  УДАРНАЯ, дрель ", "from=0", 10, loader);
+        cache.get("дрель ударная", "from=10", 10, loader);
+
+        assertEquals(2, loads.get());
+        ItemSearchCacheStats stats = cache.getStats();
+        assertEquals(1, stats.getHits());
+        assertEquals(2, stats.getMisses());
+        assertEquals(1.0 / 3, stats.getHitRate(), 1e-9);
+        assertEquals(2, stats.getEntries());
+    }
+
+    @Test
+    void onSaved_whenItemDoesNotMatchAllWords_thenEntryKept() {
+        cache.get("дрель ударная", "from=0", 10, loader);
+
+        cache.onSaved(null, new ItemTextDto(1L, "Дрель", "Аккумуляторная"));
+        cache.onSaved(null, new ItemTextDto(2L, "Отвертка", "Ударная"));
+        cache.get("дрель ударная", "from=0", 10, loader);
+
+        assertEquals(1, loads.get());
+        assertEquals(0, cache.getStats().getInvalidated());
+    }
+
+    @Test
+    void onSaved_whenItemMatchesBeforeOrAfter_thenEntryDropped() {
+        cache.get("дрел", "from=0", 10, loader);
+        cache.onSaved(null, new ItemTextDto(1L, "Дрель ударная", "Мощная"));
+        cache.get("дрел", "from=0", 10, loader);
+
+        cache.onSaved(new ItemTextDto(1L, "Дрель ударная", "Мощная"), null);
+        cache.get("дрел", "from=0", 10, loader);
+
+        cache.get("перфоратор", "from=0", 10, loader);
+        cache.onSaved(null, new ItemTextDto(2L, "Прфоратор", "С опечаткой в названии"));
+        cache.get("перфоратор", "from=0", 10, loader);
+
+        assertEquals(5, loads.get());
+        assertEquals(3, cache.getStats().getInvalidated());
+    }
+
+    @Test
+    void get_whenMoreEntriesThanLimit_thenLeastRecentlyUsedEvicted() {
+        cache.get("дрель", "from=0", 10, loader);
+        cache.get("отвертка", "from=0", 10, loader);
+        cache.get("дрель", "from=0", 10, loader);
+        cache.get("клей", "from=0", 10, loader);
+
+        cache.get("дрель", "from=0", 10, loader);
+        cache.get("отвертка", "from=0", 10, loader);
+
+        assertEquals(4, loads.get());
+        assertEquals(2, cache.getStats().getEntries());
+    }
+}
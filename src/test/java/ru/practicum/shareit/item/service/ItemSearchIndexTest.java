@@ -0,0 +1,221 @@
+package ru.practicum.shareit.item.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.practicum.shareit.item.dto.ItemTextDto;
+import ru.practicum.shareit.item.storage.ItemRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ItemSearchIndexTest {
+    private ItemRepository itemRepository;
+    private ItemSearchIndex index;
+
+    @BeforeEach
+    void beforeEach() {
+        itemRepository = Mockito.mock(ItemRepository.class);
+        index = new ItemSearchIndex(itemRepository, Mockito.mock(PlatformTransactionManager.class));
+        when(itemRepository.streamAvailableTexts()).thenReturn(Stream.of(
+                new ItemTextDto(1L, "Дрель", "Простая дрель"),
+                new ItemTextDto(2L, "Отвертка", "Аккумуляторная отвертка"),
+                new ItemTextDto(3L, "Клей Момент", "Тюбик суперклея марки Момент")));
+        index.load();
+    }
+
+    @Test
+    void search_whenPrefixInAnyCase_thenMatchesWords() {
+        assertEquals(List.of(1L), ids(index.search("дРелЬ", null, 100)));
+        assertEquals(List.of(2L), ids(index.search("аккУМУляторная", null, 100)));
+        assertEquals(List.of(3L), ids(index.search("суперк", null, 100)));
+        assertTrue(ids(index.search("рел", null, 100)).isEmpty());
+
+        verify(itemRepository, times(1)).streamAvailableTexts();
+    }
+
+    @Test
+    void search_whenSeveralWords_thenAllRequired() {
+        assertEquals(List.of(3L), ids(index.search("клей момент", null, 100)));
+        assertTrue(ids(index.search("клей дрель", null, 100)).isEmpty());
+    }
+
+    @Test
+    void search_whenAfterIdAndLimit_thenKeysetPage() {
+        assertEquals(List.of(1L), ids(index.search("дрель", null, 1)));
+        List<ItemSearchIndex.Hit> first = index.search("дрель", null, 1);
+        assertTrue(index.search("дрель", first.get(0), 1).isEmpty());
+    }
+
+    @Test
+    void onSaved_whenItemChanged_thenIndexFollows() {
+        index.onSaved(4L, "Дрель ударная", "Мощная", true);
+        assertEquals(List.of(1L, 4L), ids(index.search("дрель", null, 100)));
+
+        index.onSaved(1L, "Перфоратор", "Простой перфоратор", true);
+        assertEquals(List.of(4L), ids(index.search("дрель", null, 100)));
+        assertEquals(List.of(1L), ids(index.search("перфоратор", null, 100)));
+
+        index.onSaved(4L, "Дрель ударная", "Мощная", false);
+        assertTrue(ids(index.search("дрель", null, 100)).isEmpty());
+    }
+
+    @Test
+    void search_whenNameAndDescriptionMatch_thenNameRankedFirst() {
+        index.onSaved(4L, "Набор сверл", "Сверла для дрели и шуруповерта", true);
+        index.onSaved(5L, "Аккумуляторная дрель", "Мощная", true);
+
+        assertEquals(List.of(5L, 2L), ids(index.search("аккумуляторная", null, 10)));
+        assertEquals(List.of(1L, 5L, 4L), ids(index.search("дрел", null, 10)));
+    }
+
+    @Test
+    void search_whenTermRare_thenScoresHigherThanCommonTerm() {
+        for (long id = 10; id < 20; id++) {
+            index.onSaved(id, "Дрель " + id, "Обычная", true);
+        }
+        index.onSaved(20L, "Дрель редкая", "Обычная", true);
+
+        List<ItemSearchIndex.Hit> hits = index.search("дрель", null, 100);
+        List<ItemSearchIndex.Hit> rare = index.search("редкая", null, 100);
+
+        assertEquals(12, hits.size());
+        assertTrue(rare.get(0).getScore() > hits.get(hits.size() - 1).getScore());
+    }
+
+    @Test
+    void search_whenLimitSmallerThanMatches_thenTopAndKeysetContinuation() {
+        for (long id = 10; id < 40; id++) {
+            index.onSaved(id, "Дрель", "Описание " + "слово ".repeat((int) (id % 7)), true);
+        }
+        List<Long> all = ids(index.search("дрель", null, 100));
+
+        List<Long> paged = new ArrayList<>();
+        ItemSearchIndex.Hit after = null;
+        List<ItemSearchIndex.Hit> page;
+        do {
+            page = index.search("дрель", after, 7);
+            page.forEach(hit -> paged.add(hit.getId()));
+            after = page.isEmpty() ? null : page.get(page.size() - 1);
+        } while (page.size() == 7);
+
+        assertEquals(all, paged);
+    }
+
+    @Test
+    void search_whenTypo_thenMatchesRankedBelowExact() {
+        index.onSaved(4L, "Drill", "Cordless drill", true);
+        index.onSaved(5L, "Дрэль", "Та самая дрэль", true);
+
+        assertEquals(List.of(5L, 1L), ids(index.search("дрэль", null, 10)));
+        assertEquals(List.of(1L, 5L), ids(index.search("дрель", null, 10)));
+        assertEquals(List.of(4L), ids(index.search("dril", null, 10)));
+        assertEquals(List.of(4L), ids(index.search("dirll", null, 10)));
+        assertEquals(List.of(2L), ids(index.search("акумуляторная", null, 10)));
+        assertTrue(ids(index.search("дрл", null, 10)).isEmpty());
+    }
+
+    @Test
+    void search_whenShortWord_thenExactMatchOnly() {
+        index.onSaved(4L, "Drill A", "Cordless", true);
+        index.onSaved(5L, "Anchor drill", "Cordless", true);
+
+        assertEquals(List.of(4L), ids(index.search("a drill", null, 10)));
+        assertTrue(ids(index.search("dr", null, 10)).isEmpty());
+        assertEquals(List.of(4L, 5L), ids(index.search("dri", null, 10)));
+    }
+
+    @Test
+    void search_whenNotLoaded_thenDatabaseScanInIdOrder() {
+        ItemSearchIndex notLoaded = new ItemSearchIndex(itemRepository, Mockito.mock(PlatformTransactionManager.class));
+        when(itemRepository.streamAvailableTextsLike("%простая%", 0L)).thenReturn(Stream.of(
+                new ItemTextDto(1L, "Дрель", "Простая дрель"),
+                new ItemTextDto(4L, "Отвертка", "Простая отвертка"),
+                new ItemTextDto(5L, "Дрель ударная", "Простая")));
+        when(itemRepository.streamAvailableTextsLike("%простая%", 1L)).thenReturn(Stream.of(
+                new ItemTextDto(5L, "Дрель ударная", "Простая")));
+
+        List<ItemSearchIndex.Hit> first = notLoaded.search("дрель простая", null, 1);
+
+        assertEquals(List.of(1L), ids(first));
+        assertEquals(0, first.get(0).getScore());
+        assertEquals(List.of(5L), ids(notLoaded.search("дрель простая", first.get(0), 1)));
+        assertTrue(notLoaded.suggest("дрель", 10).isEmpty());
+        assertTrue(!notLoaded.isLoaded());
+    }
+
+    @Test
+    void load_whenItemChangedDuringLoad_thenCommittedChangeKept() {
+        ItemSearchIndex loading = new ItemSearchIndex(itemRepository, Mockito.mock(PlatformTransactionManager.class));
+        when(itemRepository.streamAvailableTexts()).thenReturn(Stream.of(
+                new ItemTextDto(1L, "Дрель", "Простая дрель"),
+                new ItemTextDto(2L, "Отвертка", "Аккумуляторная отвертка"))
+                .peek(item -> {
+                    if (item.getId() == 1L) {
+                        loading.onSaved(1L, "Перфоратор", "Простой перфоратор", true);
+                    }
+                }));
+
+        loading.load();
+
+        assertTrue(loading.isLoaded());
+        assertTrue(ids(loading.search("дрель", null, 10)).isEmpty());
+        assertEquals(List.of(1L), ids(loading.search("перфоратор", null, 10)));
+        assertEquals(List.of(2L), ids(loading.search("отвертка", null, 10)));
+    }
+
+    @Test
+    void tryLoad_whenStreamFails_thenPartialDataDroppedAndRetrySucceeds() {
+        ItemSearchIndex failing = new ItemSearchIndex(itemRepository, Mockito.mock(PlatformTransactionManager.class));
+        when(itemRepository.streamAvailableTexts())
+                .thenReturn(Stream.of(new ItemTextDto(1L, "Дрель", "Простая дрель"),
+                                new ItemTextDto(2L, "Отвертка", "Аккумуляторная отвертка"))
+                        .peek(item -> {
+                            if (item.getId() == 2L) {
+                                throw new IllegalStateException("Соединение разорвано");
+                            }
+                        }))
+                .thenReturn(Stream.of(new ItemTextDto(2L, "Отвертка", "Аккумуляторная отвертка")));
+
+        assertFalse(failing.tryLoad());
+        assertFalse(failing.isLoaded());
+        assertEquals(1, failing.getLoadFailures());
+
+        assertTrue(failing.tryLoad());
+        assertTrue(failing.isLoaded());
+        assertEquals(1, failing.getLoadFailures());
+        assertTrue(ids(failing.search("дрель", null, 10)).isEmpty());
+        assertEquals(List.of(2L), ids(failing.search("отвертка", null, 10)));
+    }
+
+    private static List<Long> ids(List<ItemSearchIndex.Hit> hits) {
+        return hits.stream().map(ItemSearchIndex.Hit::getId).collect(Collectors.toList());
+    }
+
+    @Test
+    void suggest_whenPrefix_thenAvailableNamesByPopularity() {
+        index.onSaved(4L, "Дрель  ударная", "Мощная", true);
+        index.onSaved(5L, "дрель ударная", "Еще одна", true);
+        index.onSaved(6L, "Дрель аккумуляторная", "Недоступная", false);
+
+        assertEquals(List.of("Дрель ударная", "Дрель"), index.suggest("дРе", 10));
+        assertEquals(List.of("Дрель ударная"), index.suggest("дрель, у", 10));
+        assertEquals(List.of("Клей Момент"), index.suggest("клей", 10));
+        assertTrue(index.suggest("аккумуляторная", 10).isEmpty());
+
+        index.onSaved(4L, "Дрель ударная", "Мощная", false);
+        index.onSaved(5L, "Перфоратор", "Еще одна", true);
+        assertEquals(List.of("Дрель"), index.suggest("дре", 10));
+        assertEquals(List.of("Перфоратор"), index.suggest("пер", 10));
+    }
+}
@@ -7,17 +7,33 @@ import org.mapstruct.factory.Mappers;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.practicum.shareit.OffsetPageRequest;
+import ru.practicum.shareit.booking.dto.BookingDtoItem;
+import ru.practicum.shareit.booking.dto.LastNextBookingDto;
+import ru.practicum.shareit.booking.exceptions.InvalidCursorException;
+import ru.practicum.shareit.booking.exceptions.UnavaibleDatePeriodException;
 import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.service.ItemBookingCache;
+import ru.practicum.shareit.booking.storage.BookingArchiveRepository;
 import ru.practicum.shareit.booking.storage.BookingRepository;
 import ru.practicum.shareit.booking.storage.BookingStatus;
 import ru.practicum.shareit.item.dto.CommentDto;
+import ru.practicum.shareit.item.dto.CommentPage;
 import ru.practicum.shareit.item.dto.CommentDtoRequest;
+import ru.practicum.shareit.item.dto.ItemCommentDto;
 import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.dto.ItemPage;
+import ru.practicum.shareit.item.dto.ItemPeriodDto;
+import ru.practicum.shareit.item.dto.ItemTextDto;
 import ru.practicum.shareit.item.exceptions.ItemNotAvailibleException;
 import ru.practicum.shareit.item.exceptions.ItemNotFoundException;
 import ru.practicum.shareit.item.model.Comment;
 import ru.practicum.shareit.item.model.Item;
 import ru.practicum.shareit.item.storage.CommentRepository;
+import ru.practicum.shareit.item.storage.ItemDetails;
 import ru.practicum.shareit.item.storage.ItemRepository;
 import ru.practicum.shareit.request.storage.ItemRequestRepository;
 import ru.practicum.shareit.user.exceptions.EmailErrorException;
@@ -30,7 +46,11 @@ import ru.practicum.shareit.user.storage.UserRepository;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -57,6 +77,9 @@ class ItemServiceImplTest {
     private CommentRepository commentRepository;
     @Mock
     private CommentMapper commentMapper;
+    @Mock
+    private BookingArchiveRepository bookingArchiveRepository;
+    private ItemSearchIndex itemSearchIndex;
     private ItemService itemService;
 
     @BeforeEach
@@ -70,6 +93,8 @@ class ItemServiceImplTest {
         bookingRepository = Mockito.mock(BookingRepository.class);
         commentRepository = Mockito.mock(CommentRepository.class);
         commentMapper = Mockito.mock(CommentMapper.class);
+        bookingArchiveRepository = Mockito.mock(BookingArchiveRepository.class);
+        itemSearchIndex = new ItemSearchIndex(itemRepository, Mockito.mock(PlatformTransactionManager.class));
         itemService = new ItemServiceImpl(
                 itemRepository,
                 userRepository,
@@ -77,7 +102,11 @@ class ItemServiceImplTest {
                 itemMapper,
                 bookingRepository,
                 commentRepository,
-                commentMapper);
+                commentMapper,
+                bookingArchiveRepository,
+                new ItemBookingCache(bookingRepository, 100),
+                itemSearchIndex,
+                new ItemSearchCache(100));
     }
 
     @Test
@@ -268,9 +297,8 @@ class ItemServiceImplTest {
                 .owner(user)
                 .build();
 
-        when(itemRepository.findById(any())).thenReturn(Optional.of(item));
-        when(commentRepository.findByItemId(anyLong())).thenReturn(new ArrayList<>());
-        when(userService.getUserById(anyLong())).thenReturn(user);
+        when(itemRepository.findItemDetails(anyLong(), anyLong(), anyInt(), any()))
+                .thenReturn(Optional.of(new ItemDetails(item, true, new ArrayList<>(), null, null)));
 
         ItemDto itemDtoEnhanced = itemService.getItemById(item.getId(), user.getId());
 
@@ -292,11 +320,22 @@ class ItemServiceImplTest {
                 .owner(user)
                 .build();
 
-        when(itemRepository.findById(any())).thenReturn(Optional.empty());
+        when(itemRepository.findItemDetails(anyLong(), anyLong(), anyInt(), any())).thenReturn(Optional.empty());
 
         assertThrows(ItemNotFoundException.class, () -> itemService.getItemById(item.getId(), user.getId()));
     }
 
+    @Test
+    void getItemById_whenUserInvalid_thenThrowException() {
+        User user = new User(1L, "testName", "testEmail@gmail.com");
+        Item item = new Item(1L, "itemName", "itemDescription", true, user, null);
+
+        when(itemRepository.findItemDetails(anyLong(), anyLong(), anyInt(), any()))
+                .thenReturn(Optional.of(new ItemDetails(item, false, new ArrayList<>(), null, null)));
+
+        assertThrows(UserNotFoundException.class, () -> itemService.getItemById(item.getId(), 99L));
+    }
+
     @Test
     void getItemById_whenOwnerEqualsUser_thenReturnItemDtoWithBooking() {
         User user = new User(1L, "testName", "testEmail@gmail.com");
@@ -308,57 +347,121 @@ class ItemServiceImplTest {
                 .available(true)
                 .owner(user)
                 .build();
-        Booking lastBooking = Booking.builder()
-                .id(1L)
-                .item(item)
-                .booker(booker)
-                .status(BookingStatus.WAITING)
-                .start(LocalDateTime.now())
-                .end(LocalDateTime.now())
-                .build();
+        LocalDateTime now = LocalDateTime.now();
+        BookingDtoItem lastBooking = new BookingDtoItem(1L, booker.getId(), now.minusDays(2), now.minusDays(1));
+        BookingDtoItem nextBooking = new BookingDtoItem(2L, booker.getId(), now.plusDays(1), now.plusDays(2));
+        List<CommentDto> comments = new ArrayList<>(List.of(
+                new CommentDto(1L, "first", "BookerName", now),
+                new CommentDto(2L, "second", "BookerName", now)));
 
-        when(itemRepository.findById(any())).thenReturn(Optional.of(item));
-        when(bookingRepository.findFirstByItemIdAndStatusAndStartBeforeOrderByStartDesc(
-                anyLong(), any(), any())).thenReturn(Optional.ofNullable(lastBooking));
-        when(bookingRepository.findFirstByItemIdAndStatusAndStartAfterOrderByStart(
-                anyLong(), any(), any())).thenReturn(Optional.ofNullable(lastBooking));
-        when(userService.getUserById(anyLong())).thenReturn(user);
+        when(itemRepository.findItemDetails(anyLong(), anyLong(), anyInt(), any()))
+                .thenReturn(Optional.of(new ItemDetails(item, true, comments, lastBooking, nextBooking)));
 
         ItemDto itemDtoEnhanced = itemService.getItemById(item.getId(), user.getId());
+        ItemDto cached = itemService.getItemById(item.getId(), user.getId());
 
         assertEquals(itemDtoEnhanced.getId(), item.getId());
-        assertNotNull(itemDtoEnhanced.getLastBooking());
-        assertNotNull(itemDtoEnhanced.getNextBooking());
+        assertEquals(1L, itemDtoEnhanced.getLastBooking().getId());
+        assertEquals(2L, itemDtoEnhanced.getNextBooking().getId());
+        assertEquals(1L, itemDtoEnhanced.getComments().get(0).getId());
+        assertEquals(2L, cached.getNextBooking().getId());
+        verify(itemRepository, times(1)).findItemDetails(eq(item.getId()), eq(user.getId()), anyInt(), notNull());
+        verify(itemRepository, times(1)).findItemDetails(eq(item.getId()), eq(user.getId()), anyInt(), isNull());
+        verify(bookingRepository, never()).findLastAndNextBookings(any(), any());
     }
 
     @Test
     void getAllItems_whenValidInput_thenReturnItemList() {
         User user = new User(1L, "testName", "testEmail@gmail.com");
-        Item item = Item.builder()
-                .id(1L)
-                .name("itemName")
-                .description("itemDescription")
-                .available(true)
-                .owner(user)
-                .build();
+        ItemDto item = new ItemDto(1L, "itemName", "itemDescription", true, null);
 
-        when(itemRepository.findAllByOwner(any())).thenReturn(List.of(item));
+        BookingDtoItem next = new BookingDtoItem(5L, 2L, LocalDateTime.now().plusDays(1), LocalDateTime.now().plusDays(2));
+        when(itemRepository.findDtoByOwnerIdAndIdAfter(eq(user.getId()), eq(0L), any()))
+                .thenReturn(new ArrayList<>(List.of(item)));
         when(userService.getUserById(anyLong())).thenReturn(user);
+        when(bookingRepository.findLastAndNextBookings(any(), any()))
+                .thenReturn(Map.of(item.getId(), new LastNextBookingDto(item.getId(), null, next)));
 
-        List<ItemDto> ideList = itemService.getAllItems(user.getId());
+        ItemPage page = itemService.getAllItems(user.getId(), null, 10, false, null);
+        List<ItemDto> ideList = page.getItems();
 
+        assertNull(page.getNextCursor());
         assertEquals(1, ideList.size());
+        assertNull(ideList.get(0).getLastBooking());
+        assertEquals(next.getId(), ideList.get(0).getNextBooking().getId());
         assertEquals(item.getId(), ideList.get(0).getId());
         assertEquals(item.getName(), ideList.get(0).getName());
         assertEquals(item.getAvailable(), ideList.get(0).getAvailable());
         assertEquals(item.getDescription(), ideList.get(0).getDescription());
     }
 
+    @Test
+    void getAllItems_whenMoreThanPage_thenCursorContinuesAndOnlyPageEnriched() {
+        User user = new User(1L, "testName", "testEmail@gmail.com");
+        when(userService.getUserById(anyLong())).thenReturn(user);
+        when(itemRepository.findDtoByOwnerIdAndIdAfter(eq(user.getId()), anyLong(), any())).thenAnswer(invocation -> {
+            Long afterId = invocation.getArgument(1);
+            Pageable pageable = invocation.getArgument(2);
+            return LongStream.rangeClosed(1, 5)
+                    .filter(id -> id > afterId)
+                    .limit(pageable.getPageSize())
+                    .mapToObj(id -> new ItemDto(id, "item" + id, "", true, null))
+                    .collect(Collectors.toList());
+        });
+
+        ItemPage first = itemService.getAllItems(user.getId(), null, 2, false, null);
+        ItemPage second = itemService.getAllItems(user.getId(), first.getNextCursor(), 2, false, null);
+        ItemPage last = itemService.getAllItems(user.getId(), second.getNextCursor(), 2, false, null);
+
+        assertEquals(List.of(1L, 2L), first.getItems().stream().map(ItemDto::getId).collect(Collectors.toList()));
+        assertEquals(List.of(3L, 4L), second.getItems().stream().map(ItemDto::getId).collect(Collectors.toList()));
+        assertEquals(List.of(5L), last.getItems().stream().map(ItemDto::getId).collect(Collectors.toList()));
+        assertNull(last.getNextCursor());
+        verify(bookingRepository).findLastAndNextBookings(eq(List.of(1L, 2L)), any());
+        verify(bookingRepository).findLastAndNextBookings(eq(List.of(3L, 4L)), any());
+        assertThrows(InvalidCursorException.class, () -> itemService.getAllItems(user.getId(), "???", 2, false, null));
+    }
+
+    @Test
+    void getAllItems_whenFrom_thenOffsetPageFromDatabase() {
+        User user = new User(1L, "testName", "testEmail@gmail.com");
+        when(userService.getUserById(anyLong())).thenReturn(user);
+        when(itemRepository.findDtoByOwnerId(user.getId(), OffsetPageRequest.of(3, 2)))
+                .thenReturn(new ArrayList<>(List.of(new ItemDto(4L, "item", "", true, null))));
+
+        List<ItemDto> result = itemService.getAllItems(user.getId(), 3, 2, false, null);
+
+        assertEquals(4L, result.get(0).getId());
+    }
+
+    @Test
+    void getAllItems_whenNoPaging_thenAllItemsUnpaged() {
+        User user = new User(1L, "testName", "testEmail@gmail.com");
+        when(userService.getUserById(anyLong())).thenReturn(user);
+        when(itemRepository.findDtoByOwnerId(user.getId(), Pageable.unpaged())).thenReturn(new ArrayList<>(List.of(
+                new ItemDto(1L, "item", "", true, null), new ItemDto(2L, "item", "", true, null))));
+
+        List<ItemDto> result = itemService.getAllItems(user.getId(), false, null);
+
+        assertEquals(List.of(1L, 2L), result.stream().map(ItemDto::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    void getComments_whenFromNotMultipleOfSize_thenOffsetPassedAsIs() {
+        when(itemRepository.existsById(1L)).thenReturn(true);
+        when(commentRepository.findDtoByItemId(1L, OffsetPageRequest.of(3, 2))).thenReturn(List.of(
+                new CommentDto(2L, "two", "author", LocalDateTime.now())));
+
+        List<CommentDto> result = itemService.getComments(1L, 3, 2);
+
+        assertEquals(2L, result.get(0).getId());
+    }
+
     @Test
     void getAllItems_whenUserOwnerInvalid_thenThrowException() {
         User user = new User(1L, "testName", "testEmail@gmail.com");
 
-        assertThrows(UserNotFoundException.class, () -> itemService.getAllItems(user.getId()));
+        assertThrows(UserNotFoundException.class, () -> itemService.getAllItems(user.getId(), null, 10, false, null));
     }
 
     @Test
@@ -393,6 +496,7 @@ class ItemServiceImplTest {
 
         assertEquals(commentDtoTest.getText(), commentDtoRequest.getText());
         verify(commentRepository, times(1)).save(any());
+        verify(itemRepository, times(1)).incrementCommentCount(item.getId());
     }
 
     @Test
@@ -460,25 +564,300 @@ class ItemServiceImplTest {
         assertThrows(ItemNotFoundException.class, () -> itemService.addComment(item.getId(), userTwo.getId(), commentDtoRequest));
     }
 
+    @Test
+    void getComments_whenMoreThanPage_thenNewestFirstWithCursor() {
+        LocalDateTime created = LocalDateTime.now();
+        when(itemRepository.existsById(1L)).thenReturn(true);
+        when(commentRepository.findDtoByItemId(eq(1L), any())).thenReturn(List.of(
+                new CommentDto(5L, "five", "author", created),
+                new CommentDto(4L, "four", "author", created),
+                new CommentDto(3L, "three", "author", created)));
+        when(commentRepository.findDtoByItemIdBefore(eq(1L), eq(created), eq(4L), any())).thenReturn(List.of(
+                new CommentDto(3L, "three", "author", created)));
+
+        CommentPage first = itemService.getComments(1L, null, 2);
+        CommentPage second = itemService.getComments(1L, first.getNextCursor(), 2);
+
+        assertEquals(List.of(5L, 4L), first.getComments().stream().map(CommentDto::getId).collect(Collectors.toList()));
+        assertEquals(List.of(3L), second.getComments().stream().map(CommentDto::getId).collect(Collectors.toList()));
+        assertNull(second.getNextCursor());
+        verify(commentRepository).findDtoByItemId(1L, PageRequest.of(0, 3));
+        assertThrows(InvalidCursorException.class, () -> itemService.getComments(1L, "???", 2));
+    }
+
+    @Test
+    void getComments_whenItemUnknown_thenThrowException() {
+        when(itemRepository.existsById(anyLong())).thenReturn(false);
+
+        assertThrows(ItemNotFoundException.class, () -> itemService.getComments(1L, null, 10));
+    }
+
     @Test
     void getItemsBySearch_whenValid_returnList() {
-        User userOne = new User(1L, "testNameOne", "testEmailOne@gmail.com");
-        Item item = Item.builder()
-                .id(1L)
-                .name("itemName")
-                .description("itemDescription")
-                .available(true)
-                .owner(userOne)
-                .build();
-        when(itemRepository.search(any())).thenReturn(List.of(item));
-        List<ItemDto> result = itemService.getItemsBySearch("itemName");
-        assertEquals(1L, result.size());
+        ItemDto itemDto = new ItemDto(1L, "itemName", "itemDescription", true, null);
+        when(itemRepository.streamAvailableTexts()).thenReturn(Stream.of(
+                new ItemTextDto(itemDto.getId(), itemDto.getName(), itemDto.getDescription())));
+        itemSearchIndex.load();
+        when(itemRepository.findAvailableDtoByIdIn(List.of(itemDto.getId()))).thenReturn(List.of(itemDto));
+
+        ItemPage result = itemService.getItemsBySearch("itemName", null, 10, false, null);
+
+        assertEquals(1L, result.getItems().size());
+        assertNull(result.getNextCursor());
+        assertTrue(itemService.getItemsBySearch("unknown", null, 10, false, null).getItems().isEmpty());
+    }
+
+    @Test
+    void getItemsBySearch_whenIndexNotLoaded_thenDatabaseScannedAndNotCached() {
+        when(itemRepository.streamAvailableTextsLike("%дрель%", 0L))
+                .thenAnswer(invocation -> Stream.of(new ItemTextDto(1L, "Дрель", "Ударная")));
+        when(itemRepository.findAvailableDtoByIdIn(List.of(1L))).thenReturn(List.of(new ItemDto(1L, "Дрель", "", true, null)));
+
+        itemService.getItemsBySearch("дрель", null, 10, false, null);
+        ItemPage result = itemService.getItemsBySearch("дрель", null, 10, false, null);
+
+        assertEquals(1L, result.getItems().get(0).getId());
+        verify(itemRepository, times(2)).streamAvailableTextsLike("%дрель%", 0L);
+        verify(itemRepository, never()).streamAvailableTexts();
+        assertEquals(0, itemService.getSearchCacheStats().getHits());
+    }
+
+    @Test
+    void getItemsBySearch_whenMoreThanPage_thenCursorContinues() {
+        when(itemRepository.streamAvailableTexts()).thenReturn(Stream.of(
+                new ItemTextDto(1L, "дрель", "первая"),
+                new ItemTextDto(2L, "дрель", "вторая"),
+                new ItemTextDto(3L, "дрель", "третья")));
+        itemSearchIndex.load();
+        when(itemRepository.findAvailableDtoByIdIn(any())).thenAnswer(invocation -> {
+            List<Long> ids = invocation.getArgument(0);
+            return ids.stream().map(id -> new ItemDto(id, "дрель", "", true, null)).collect(Collectors.toList());
+        });
+
+        ItemPage first = itemService.getItemsBySearch("дрель", null, 2, false, null);
+        ItemPage second = itemService.getItemsBySearch("дрель", first.getNextCursor(), 2, false, null);
+        List<ItemDto> offset = itemService.getItemsBySearch("дрель", 1, 2, false, null);
+
+        assertEquals(List.of(1L, 2L), first.getItems().stream().map(ItemDto::getId).collect(Collectors.toList()));
+        assertEquals(List.of(3L), second.getItems().stream().map(ItemDto::getId).collect(Collectors.toList()));
+        assertNull(second.getNextCursor());
+        assertEquals(List.of(2L, 3L), offset.stream().map(ItemDto::getId).collect(Collectors.toList()));
+        assertThrows(InvalidCursorException.class, () -> itemService.getItemsBySearch("дрель", "???", 2, false, null));
+    }
+
+    @Test
+    void getItemsBySearch_whenNameMatchesLaterItem_thenRankedByRelevance() {
+        when(itemRepository.streamAvailableTexts()).thenReturn(Stream.of(
+                new ItemTextDto(1L, "Набор сверл", "Сверла для дрели"),
+                new ItemTextDto(2L, "Дрель", "Ударная")));
+        itemSearchIndex.load();
+        when(itemRepository.findAvailableDtoByIdIn(any())).thenAnswer(invocation -> {
+            List<Long> ids = invocation.getArgument(0);
+            return ids.stream().sorted().map(id -> new ItemDto(id, "", "", true, null)).collect(Collectors.toList());
+        });
+
+        ItemPage result = itemService.getItemsBySearch("дрел", null, 10, false, null);
+
+        assertEquals(List.of(2L, 1L), result.getItems().stream().map(ItemDto::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    void getItemsBySearch_whenRepeatedAndMatchingItemUpdated_thenReloadedOnlyAfterUpdate() {
+        User user = new User(1L, "testName", "testEmail@gmail.com");
+        Item item = new Item(1L, "Дрель", "Ударная", true, user, null);
+        when(itemRepository.streamAvailableTexts()).thenReturn(Stream.of(new ItemTextDto(1L, "Дрель", "Ударная")));
+        itemSearchIndex.load();
+        when(itemRepository.findAvailableDtoByIdIn(any())).thenReturn(List.of(new ItemDto(1L, "Дрель", "", true, null)));
+        when(itemRepository.findById(1L)).thenReturn(Optional.of(item));
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+        when(itemRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        itemService.getItemsBySearch("дрель", null, 10, false, null);
+        itemService.getItemsBySearch("ДРЕЛЬ", null, 10, false, null);
+        itemService.updateItem(ItemDto.builder().description("Мощная").build(), 1L, 1L);
+        itemService.getItemsBySearch("дрель", null, 10, false, null);
+
+        verify(itemRepository, times(2)).findAvailableDtoByIdIn(any());
+        assertEquals(1, itemService.getSearchCacheStats().getHits());
+    }
+
+    @Test
+    void getItemsBySearch_whenCallerChangesResult_thenCachedPageUntouched() {
+        when(itemRepository.streamAvailableTexts()).thenReturn(Stream.of(new ItemTextDto(1L, "Дрель", "Ударная")));
+        itemSearchIndex.load();
+        when(itemRepository.findAvailableDtoByIdIn(any())).thenReturn(List.of(new ItemDto(1L, "Дрель", "", true, null)));
+
+        itemService.getItemsBySearch("дрель", 0, 10, false, null).get(0).setName("Изменено");
+        itemService.getItemsBySearch("дрель", null, 10, false, null).getItems().get(0).setName("Изменено");
+
+        assertEquals("Дрель", itemService.getItemsBySearch("дрель", 0, 10, false, null).get(0).getName());
+        assertEquals("Дрель", itemService.getItemsBySearch("дрель", null, 10, false, null)
+                .getItems().get(0).getName());
+        assertEquals(2, itemService.getSearchCacheStats().getHits());
+    }
+
+    @Test
+    void getItemsBySearch_whenCommentAdded_thenCachedPageReloaded() {
+        User owner = new User(1L, "testName", "testEmail@gmail.com");
+        User booker = new User(2L, "testNameTwo", "testEmailTwo@gmail.com");
+        Item item = new Item(1L, "Дрель", "Ударная", true, owner, null);
+        when(itemRepository.streamAvailableTexts()).thenReturn(Stream.of(new ItemTextDto(1L, "Дрель", "Ударная")));
+        itemSearchIndex.load();
+        when(itemRepository.findAvailableDtoByIdIn(any())).thenReturn(
+                List.of(new ItemDto(1L, "Дрель", "Ударная", true, null, 0)),
+                List.of(new ItemDto(1L, "Дрель", "Ударная", true, null, 1)));
+        when(userRepository.findById(2L)).thenReturn(Optional.of(booker));
+        when(bookingRepository.findFirstByBookerIdAndItemIdAndEndBefore(anyLong(), anyLong(), any()))
+                .thenReturn(Optional.of(new Booking(1L, LocalDateTime.now().minusDays(2),
+                        LocalDateTime.now().minusDays(1), item, booker, BookingStatus.APPROVED)));
+        when(itemRepository.findById(1L)).thenReturn(Optional.of(item));
+        when(commentRepository.save(any())).thenReturn(Comment.builder()
+                .id(1L).text("Отличная").author(booker).created(LocalDateTime.now()).build());
+
+        assertEquals(0, itemService.getItemsBySearch("дрель", null, 10, false, null)
+                .getItems().get(0).getCommentCount());
+        itemService.addComment(1L, 2L, CommentDtoRequest.builder().text("Отличная").build());
+
+        assertEquals(1, itemService.getItemsBySearch("дрель", null, 10, false, null)
+                .getItems().get(0).getCommentCount());
+        verify(itemRepository, times(2)).findAvailableDtoByIdIn(any());
+    }
+
+    @Test
+    void getItemsBySearch_whenWithComments_thenPageCommentsLoadedOnceAndCacheUntouched() {
+        when(itemRepository.streamAvailableTexts()).thenReturn(Stream.of(
+                new ItemTextDto(1L, "Дрель", "Ударная"),
+                new ItemTextDto(2L, "Дрель", "Простая")));
+        itemSearchIndex.load();
+        when(itemRepository.findAvailableDtoByIdIn(any())).thenAnswer(invocation -> {
+            List<Long> ids = invocation.getArgument(0);
+            return ids.stream().map(id -> new ItemDto(id, "Дрель", "", true, null)).collect(Collectors.toList());
+        });
+        LocalDateTime created = LocalDateTime.now();
+        when(commentRepository.findCommentsByItemIdIn(any(), eq(1))).thenReturn(List.of(
+                new ItemCommentDto(2L, 7L, "Отличная", "author", created)));
+
+        ItemPage withComments = itemService.getItemsBySearch("дрель", null, 10, true, 1);
+        ItemPage cached = itemService.getItemsBySearch("дрель", null, 10, false, null);
+
+        Map<Long, List<CommentDto>> comments = withComments.getItems().stream()
+                .collect(Collectors.toMap(ItemDto::getId, ItemDto::getComments));
+        assertEquals(List.of(), comments.get(1L));
+        assertEquals(7L, comments.get(2L).get(0).getId());
+        assertEquals("author", comments.get(2L).get(0).getAuthorName());
+        assertTrue(cached.getItems().stream().allMatch(itemDto -> itemDto.getComments() == null));
+        verify(commentRepository, times(1)).findCommentsByItemIdIn(any(), any());
+        verify(commentRepository, never()).findDtoByItemId(any(), any());
+    }
+
+    @Test
+    void streamItemsBySearch_whenManyMatches_thenAllConsumedInChunks() {
+        List<ItemTextDto> texts = new ArrayList<>();
+        for (long id = 1; id <= 1200; id++) {
+            texts.add(new ItemTextDto(id, "дрель", "описание"));
+        }
+        when(itemRepository.streamAvailableTexts()).thenReturn(texts.stream());
+        itemSearchIndex.load();
+        when(itemRepository.findAvailableDtoByIdIn(any())).thenAnswer(invocation -> {
+            List<Long> ids = invocation.getArgument(0);
+            return ids.stream().map(id -> new ItemDto(id, "дрель", "", true, null)).collect(Collectors.toList());
+        });
+        List<Long> streamed = new ArrayList<>();
+
+        itemService.streamItemsBySearch("дрель", itemDto -> streamed.add(itemDto.getId()));
+
+        assertEquals(1200, streamed.size());
+        assertEquals(1200L, streamed.get(streamed.size() - 1));
+        verify(itemRepository, times(3)).findAvailableDtoByIdIn(any());
+    }
+
+    @Test
+    void getItemsBySearch_whenNoPaging_thenAllMatchesNotCached() {
+        List<ItemTextDto> texts = new ArrayList<>();
+        for (long id = 1; id <= 600; id++) {
+            texts.add(new ItemTextDto(id, "дрель", "описание"));
+        }
+        when(itemRepository.streamAvailableTexts()).thenReturn(texts.stream());
+        itemSearchIndex.load();
+        when(itemRepository.findAvailableDtoByIdIn(any())).thenAnswer(invocation -> {
+            List<Long> ids = invocation.getArgument(0);
+            return ids.stream().map(id -> new ItemDto(id, "дрель", "", true, null)).collect(Collectors.toList());
+        });
+
+        assertEquals(600, itemService.getItemsBySearch("дрель", false, null).size());
+        assertEquals(600, itemService.getItemsBySearch("дрель", false, null).size());
+        assertEquals(0, itemService.getSearchCacheStats().getHits());
     }
 
     @Test
     void getItemsBySearch_whenEmptySearchText_returnEmptyList() {
         int expectedSize = 0;
-        List<ItemDto> result = itemService.getItemsBySearch("");
+        List<ItemDto> result = itemService.getItemsBySearch("", 0, 10, false, null);
         assertEquals(expectedSize, result.size());
     }
-}
\ No newline at end of file
+
+    @Test
+    void getAvailability_whenBookingsInWindow_thenReturnMergedFreePeriods() {
+        LocalDateTime from = LocalDateTime.parse("2030-01-01T00:00");
+        LocalDateTime to = from.plusDays(1);
+        when(itemRepository.existsById(anyLong())).thenReturn(true);
+        when(bookingRepository.streamBusyPeriods(anyLong(), any(), any())).thenReturn(Stream.of(
+                new ItemPeriodDto(from.minusHours(1), from.plusHours(1)),
+                new ItemPeriodDto(from.plusHours(3), from.plusHours(6)),
+                new ItemPeriodDto(from.plusHours(4), from.plusHours(5)),
+                new ItemPeriodDto(from.plusHours(6), from.plusHours(8))));
+
+        List<ItemPeriodDto> free = itemService.getAvailability(1L, from, to);
+
+        assertEquals(List.of(
+                new ItemPeriodDto(from.plusHours(1), from.plusHours(3)),
+                new ItemPeriodDto(from.plusHours(8), to)), free);
+    }
+
+    @Test
+    void getAvailability_whenNoBookings_thenWholeWindowFree() {
+        LocalDateTime from = LocalDateTime.parse("2030-01-01T00:00");
+        when(itemRepository.existsById(anyLong())).thenReturn(true);
+        when(bookingRepository.streamBusyPeriods(anyLong(), any(), any())).thenReturn(Stream.empty());
+
+        assertEquals(List.of(new ItemPeriodDto(from, from.plusDays(1))),
+                itemService.getAvailability(1L, from, from.plusDays(1)));
+    }
+
+    @Test
+    void getAvailability_whenWindowInvalid_thenThrowException() {
+        LocalDateTime from = LocalDateTime.parse("2030-01-01T00:00");
+
+        assertThrows(UnavaibleDatePeriodException.class, () -> itemService.getAvailability(1L, from, from));
+        verify(bookingRepository, never()).streamBusyPeriods(anyLong(), any(), any());
+    }
+
+    @Test
+    void getAvailability_whenItemNotFound_thenThrowException() {
+        LocalDateTime from = LocalDateTime.parse("2030-01-01T00:00");
+        when(itemRepository.existsById(anyLong())).thenReturn(false);
+
+        assertThrows(ItemNotFoundException.class, () -> itemService.getAvailability(1L, from, from.plusDays(1)));
+    }
+
+    @Test
+    void addComment_whenBookingArchived_thenSaveComment() {
+        User userOne = new User(1L, "testNameOne", "testEmailOne@gmail.com");
+        User userTwo = new User(2L, "testNameTwo", "testEmailTwo@gmail.com");
+        Item item = new Item(1L, "itemName", "itemDescription", true, userOne, null);
+        Comment comment = new Comment(1L, "comment info", item, userTwo, LocalDateTime.now());
+
+        when(userRepository.findById(any())).thenReturn(Optional.of(userTwo));
+        when(itemRepository.findById(any())).thenReturn(Optional.of(item));
+        when(bookingRepository.findFirstByBookerIdAndItemIdAndEndBefore(anyLong(), anyLong(), any()))
+                .thenReturn(Optional.empty());
+        when(bookingArchiveRepository.existsByBookerIdAndItemIdAndEndBefore(anyLong(), anyLong(), any()))
+                .thenReturn(true);
+        when(commentRepository.save(any())).thenReturn(comment);
+
+        CommentDto commentDto = itemService.addComment(item.getId(), userTwo.getId(),
+                CommentDtoRequest.builder().text("comment info").build());
+
+        assertEquals("comment info", commentDto.getText());
+    }
+}
@@ -0,0 +1,79 @@
+package ru.practicum.shareit.item.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TermTrieTest {
+    private final TermTrie trie = new TermTrie();
+
+    @Test
+    void fuzzy_whenWithinDistance_thenReturnedWithDistance() {
+        trie.add("дрель");
+        trie.add("дрели");
+        trie.add("дрелью");
+        trie.add("клей");
+
+        assertEquals(Map.of("дрель", 1, "дрели", 2, "дрелью", 2), trie.fuzzy("дрэль", 2));
+        assertEquals(Map.of("клей", 1), trie.fuzzy("кледй", 1));
+        assertEquals(Map.of("клей", 1), trie.fuzzy("кльей", 1));
+        assertEquals(Map.of("дрель", 1), trie.fuzzy("дрэль", 1));
+        assertEquals(Map.of("дрели", 1, "дрелью", 1), trie.fuzzy("дрель", 1));
+        assertEquals(Map.of("клей", 1), trie.fuzzy("лкей", 1));
+        assertTrue(trie.fuzzy("дрель", 0).isEmpty());
+    }
+
+    @Test
+    void fuzzy_whenFirstLetterTypo_thenOnlyDistanceOneFound() {
+        trie.add("дрель");
+        trie.add("трэль");
+        trie.add("трель");
+        trie.add("фрели");
+
+        assertEquals(Map.of("дрель", 1, "трэль", 1), trie.fuzzy("дрэль", 2));
+        assertEquals(Map.of("дрель", 1, "трель", 1), trie.fuzzy("брель", 2));
+    }
+
+    @Test
+    void remove_whenTermRemoved_thenNotFoundAndPrefixesKept() {
+        trie.add("дрель");
+        trie.add("дрелью");
+        trie.add("дрелью");
+        assertEquals(2, trie.size());
+
+        trie.remove("дрелью");
+        assertEquals(2, trie.size());
+        assertTrue(trie.remove("дрелью"));
+        trie.remove("отвертка");
+
+        assertEquals(1, trie.size());
+        assertEquals(Map.of("дрель", 1), trie.fuzzy("дрели", 1));
+    }
+
+    @Test
+    void complete_whenPrefix_thenMostAddedFirstThenAlphabetical() {
+        trie.add("дрель ударная");
+        trie.add("дрель");
+        trie.add("дрель");
+        trie.add("дрель аккумуляторная");
+        trie.add("дрель аккумуляторная");
+        trie.add("дрель аккумуляторная");
+        trie.add("отвертка");
+
+        assertEquals(List.of("дрель аккумуляторная", "дрель", "дрель ударная"), trie.complete("дре", 10));
+        assertEquals(List.of("дрель аккумуляторная", "дрель"), trie.complete("дрель", 2));
+        assertEquals(List.of("дрель ударная"), trie.complete("дрель у", 10));
+        assertEquals(List.of("дрель аккумуляторная", "дрель", "дрель ударная", "отвертка"), trie.complete("", 10));
+        assertTrue(trie.complete("пила", 10).isEmpty());
+
+        trie.remove("дрель аккумуляторная");
+        trie.remove("дрель аккумуляторная");
+        assertEquals(List.of("дрель", "дрель аккумуляторная", "дрель ударная"), trie.complete("дре", 10));
+        assertTrue(trie.remove("дрель аккумуляторная"));
+        assertEquals(List.of("дрель", "дрель ударная"), trie.complete("дре", 10));
+    }
+}
@@ -0,0 +1,132 @@
+package ru.practicum.shareit.item.storage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import ru.practicum.shareit.item.dto.CommentDto;
+import ru.practicum.shareit.item.dto.ItemCommentDto;
+import ru.practicum.shareit.item.model.Comment;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.storage.UserRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+@DataJpaTest
+class CommentRepositoryTest {
+    @Autowired
+    private CommentRepository commentRepository;
+    @Autowired
+    private ItemRepository itemRepository;
+    @Autowired
+    private UserRepository userRepository;
+    private User author;
+    private Item first;
+    private Item second;
+    private Item third;
+
+    @BeforeEach
+    void beforeEach() {
+        author = userRepository.save(User.builder().name("author").email("author@gmail.com").build());
+        first = saveItem("first");
+        second = saveItem("second");
+        third = saveItem("third");
+        for (int i = 1; i <= 3; i++) {
+            saveComment(first, "first " + i);
+        }
+        saveComment(second, "second 1");
+        saveComment(third, "third 1");
+    }
+
+    @Test
+    void findCommentsByItemIdIn_whenNoLatest_thenAllCommentsOfRequestedItems() {
+        List<ItemCommentDto> comments = commentRepository.findCommentsByItemIdIn(
+                List.of(first.getId(), second.getId()), null);
+
+        assertThat(comments)
+                .extracting(ItemCommentDto::getItemId, ItemCommentDto::getText, ItemCommentDto::getAuthorName)
+                .containsExactly(
+                        tuple(first.getId(), "first 1", "author"),
+                        tuple(first.getId(), "first 2", "author"),
+                        tuple(first.getId(), "first 3", "author"),
+                        tuple(second.getId(), "second 1", "author"));
+    }
+
+    @Test
+    void findCommentsByItemIdIn_whenLatest_thenOnlyLastCommentsPerItem() {
+        List<ItemCommentDto> comments = commentRepository.findCommentsByItemIdIn(
+                List.of(first.getId(), second.getId()), 2);
+
+        assertThat(comments)
+                .extracting(ItemCommentDto::getItemId, ItemCommentDto::getText, ItemCommentDto::getAuthorName)
+                .containsExactly(
+                        tuple(first.getId(), "first 2", "author"),
+                        tuple(first.getId(), "first 3", "author"),
+                        tuple(second.getId(), "second 1", "author"));
+        assertThat(comments.get(0).getCreated()).isNotNull();
+    }
+
+    @Test
+    void findCommentsByItemIdIn_whenLaterIdCreatedEarlier_thenLatestByCreated() {
+        saveComment(second, "second 0", LocalDateTime.now().minusDays(1));
+
+        List<ItemCommentDto> latest = commentRepository.findCommentsByItemIdIn(List.of(second.getId()), 1);
+        List<ItemCommentDto> all = commentRepository.findCommentsByItemIdIn(List.of(second.getId()), null);
+
+        assertThat(latest).extracting(ItemCommentDto::getText).containsExactly("second 1");
+        assertThat(all).extracting(ItemCommentDto::getText).containsExactly("second 0", "second 1");
+    }
+
+    @Test
+    void findDtoByItemIdBefore_whenCursor_thenOlderCommentsNewestFirst() {
+        List<CommentDto> page = commentRepository.findDtoByItemId(first.getId(), PageRequest.of(0, 2));
+        List<CommentDto> next = commentRepository.findDtoByItemIdBefore(
+                first.getId(), page.get(1).getCreated(), page.get(1).getId(), PageRequest.of(0, 2));
+
+        assertThat(page).extracting(CommentDto::getText, CommentDto::getAuthorName)
+                .containsExactly(tuple("first 3", "author"), tuple("first 2", "author"));
+        assertThat(next).extracting(CommentDto::getText).containsExactly("first 1");
+    }
+
+    @Test
+    void findDtoByItemIdBefore_whenLaterIdCreatedEarlierOrSameTime_thenOrderedByCreatedThenId() {
+        LocalDateTime created = LocalDateTime.now().minusDays(1);
+        saveComment(second, "second 0", created);
+        saveComment(second, "second 0 same time", created);
+
+        List<CommentDto> page = commentRepository.findDtoByItemId(second.getId(), PageRequest.of(0, 2));
+        List<CommentDto> next = commentRepository.findDtoByItemIdBefore(
+                second.getId(), page.get(1).getCreated(), page.get(1).getId(), PageRequest.of(0, 2));
+
+        assertThat(page).extracting(CommentDto::getText).containsExactly("second 1", "second 0 same time");
+        assertThat(next).extracting(CommentDto::getText).containsExactly("second 0");
+    }
+
+    private Item saveItem(String name) {
+        return itemRepository.save(Item.builder()
+                .name(name)
+                .description(name)
+                .available(true)
+                .owner(author)
+                .build());
+    }
+
+    private void saveComment(Item item, String text) {
+        saveComment(item, text, LocalDateTime.now());
+    }
+
+    private void saveComment(Item item, String text, LocalDateTime created) {
+        commentRepository.save(Comment.builder()
+                .text(text)
+                .item(item)
+                .author(author)
+                .created(created)
+                .build());
+    }
+}
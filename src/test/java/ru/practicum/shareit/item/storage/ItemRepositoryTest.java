@@ -5,13 +5,24 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import ru.practicum.shareit.booking.model.ArchivedBooking;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.storage.BookingArchiveRepository;
+import ru.practicum.shareit.booking.storage.BookingRepository;
+import ru.practicum.shareit.booking.storage.BookingStatus;
+import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.dto.ItemTextDto;
 import ru.practicum.shareit.item.model.Item;
 import ru.practicum.shareit.user.model.User;
 import ru.practicum.shareit.user.storage.UserRepository;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 
 @DataJpaTest
 class ItemRepositoryTest {
@@ -19,6 +30,10 @@ class ItemRepositoryTest {
     private ItemRepository itemRepository;
     @Autowired
     private UserRepository userRepository;
+    @Autowired
+    private BookingRepository bookingRepository;
+    @Autowired
+    private BookingArchiveRepository bookingArchiveRepository;
     private Item item;
     private User user;
 
@@ -44,15 +59,119 @@ class ItemRepositoryTest {
     }
 
     @Test
-    void testFindAllByOwner() {
-        List<Item> items = itemRepository.findAllByOwner(user);
-        assertThat(items).hasSize(1).contains(item);
+    void testFindDtoByOwnerIdAndIdAfter() {
+        Item second = itemRepository.save(Item.builder()
+                .name("item two")
+                .description("item 2")
+                .available(false)
+                .owner(user)
+                .build());
+
+        assertThat(itemRepository.findDtoByOwnerIdAndIdAfter(user.getId(), 0L, PageRequest.of(0, 1)))
+                .extracting(ItemDto::getId).containsExactly(item.getId());
+        assertThat(itemRepository.findDtoByOwnerIdAndIdAfter(user.getId(), item.getId(), PageRequest.of(0, 10)))
+                .extracting(ItemDto::getId).containsExactly(second.getId());
+        assertThat(itemRepository.findDtoByOwnerId(user.getId(), PageRequest.of(1, 1)))
+                .extracting(ItemDto::getId).containsExactly(second.getId());
+    }
+
+    @Test
+    void testIncrementCommentCount() {
+        itemRepository.incrementCommentCount(item.getId());
+        itemRepository.incrementCommentCount(item.getId());
+
+        assertThat(itemRepository.findDtoByOwnerId(user.getId(), PageRequest.of(0, 10)))
+                .extracting(ItemDto::getCommentCount).containsExactly(2);
+    }
+
+    @Test
+    void testStreamAvailableTexts() {
+        itemRepository.save(Item.builder()
+                .name("item two")
+                .description("item 2")
+                .available(false)
+                .owner(user)
+                .build());
+
+        try (Stream<ItemTextDto> texts = itemRepository.streamAvailableTexts()) {
+            assertThat(texts).extracting(ItemTextDto::getId).containsExactly(item.getId());
+        }
     }
 
     @Test
-    void testSearch() {
-        List<Item> items = itemRepository.search("item");
-        assertThat(items).hasSize(1);
+    void testStreamAvailableTextsLike() {
+        Item second = itemRepository.save(Item.builder()
+                .name("Drill")
+                .description("Cordless DRILL")
+                .available(true)
+                .owner(user)
+                .build());
+        itemRepository.save(Item.builder()
+                .name("Drill")
+                .description("broken")
+                .available(false)
+                .owner(user)
+                .build());
+
+        try (Stream<ItemTextDto> texts = itemRepository.streamAvailableTextsLike("%drill%", 0L)) {
+            assertThat(texts).extracting(ItemTextDto::getId).containsExactly(second.getId());
+        }
+        try (Stream<ItemTextDto> texts = itemRepository.streamAvailableTextsLike("%drill%", second.getId())) {
+            assertThat(texts).isEmpty();
+        }
+    }
+
+    @Test
+    void testStreamAvailableTextsLikeNormalizesYo() {
+        Item tree = itemRepository.save(Item.builder()
+                .name("Ёлка")
+                .description("Искусственная, зелёная")
+                .available(true)
+                .owner(user)
+                .build());
+
+        try (Stream<ItemTextDto> texts = itemRepository.streamAvailableTextsLike("%елка%", 0L)) {
+            assertThat(texts).extracting(ItemTextDto::getId).containsExactly(tree.getId());
+        }
+        try (Stream<ItemTextDto> texts = itemRepository.streamAvailableTextsLike("%зеленая%", 0L)) {
+            assertThat(texts).extracting(ItemTextDto::getId).containsExactly(tree.getId());
+        }
+    }
+
+    @Test
+    void testFindItemDetails() {
+        LocalDateTime now = LocalDateTime.now();
+        User booker = userRepository.save(User.builder().name("booker").email("booker@gmail.com").build());
+        ArchivedBooking archived = bookingArchiveRepository.save(new ArchivedBooking(
+                1000L, now.minusYears(2), now.minusYears(2).plusDays(1), item, booker, BookingStatus.APPROVED));
+        Booking next = bookingRepository.save(
+                new Booking(null, now.plusDays(1), now.plusDays(2), item, booker, BookingStatus.APPROVED));
+        bookingRepository.save(new Booking(null, now.plusDays(3), now.plusDays(4), item, booker, BookingStatus.APPROVED));
+
+        ItemDetails details = itemRepository.findItemDetails(item.getId(), user.getId(), 10, now).orElseThrow();
+        ItemDetails cached = itemRepository.findItemDetails(item.getId(), user.getId(), 10, null).orElseThrow();
+        ItemDetails notOwner = itemRepository.findItemDetails(item.getId(), booker.getId(), 10, now).orElseThrow();
+
+        assertThat(details.getLastBooking().getId()).isEqualTo(archived.getId());
+        assertThat(details.getNextBooking().getId()).isEqualTo(next.getId());
+        assertThat(cached.getLastBooking()).isNull();
+        assertThat(cached.getNextBooking()).isNull();
+        assertThat(notOwner.getNextBooking()).isNull();
+        assertThat(notOwner.isViewerExists()).isTrue();
+    }
+
+    @Test
+    void testFindAvailableDtoByIdIn() {
+        Item unavailable = itemRepository.save(Item.builder()
+                .name("item two")
+                .description("item 2")
+                .available(false)
+                .owner(user)
+                .build());
+
+        assertThat(itemRepository.findAvailableDtoByIdIn(List.of(item.getId(), unavailable.getId())))
+                .extracting(ItemDto::getId, ItemDto::getName, ItemDto::getAvailable, ItemDto::getCommentCount)
+                .containsExactly(tuple(item.getId(), item.getName(), true, 0));
     }
 
 
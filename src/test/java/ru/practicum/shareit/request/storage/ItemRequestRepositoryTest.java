@@ -53,7 +53,7 @@ class ItemRequestRepositoryTest {
         itemRequest.setRequester(requestor1);
         ItemRequest newItemRequest = requestRepository.save(itemRequest);
         List<ItemRequest> requests = requestRepository
-                .findAllByRequesterIdNotOrderByCreatedDesc(3L, PageRequest.of(0, 2));
+                .findAllByRequesterIdNotOrderByCreatedDesc(requestor1.getId() + 1, PageRequest.of(0, 2));
 
         assertThat(requests).hasSize(1).contains(newItemRequest);
     }